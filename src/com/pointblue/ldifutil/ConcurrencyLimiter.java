@@ -0,0 +1,153 @@
+package com.pointblue.ldifutil;
+
+import java.util.*;
+
+/**
+ * The `ConcurrencyLimiter` class limits the number of requests in flight against a server.
+ * <p>
+ * An adaptive limiter adjusts the limit from the latencies it observes (AIMD). Latencies are collected in windows
+ * of `WINDOW_SIZE` requests. If the p99 latency of a window is above the target, or a request was dropped because
+ * the server was busy or timed out, the limit is cut by a quarter, at most once per limit's worth of requests.
+ * Otherwise, if the window used the whole limit, the limit grows: it doubles per window until the first cut
+ * (slow start) and grows by one per window after that.
+ * A fixed limiter never changes its limit.
+ */
+public class ConcurrencyLimiter {
+
+    /** Number of completed requests per evaluation window. */
+    private static final int WINDOW_SIZE = 100;
+    private static final double DECREASE_FACTOR = 0.75;
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetP99Nanos;
+    private final long[] window = new long[WINDOW_SIZE];
+    private int windowCount = 0;
+    private boolean windowDropped = false;
+    private int windowMaxInFlight = 0;
+    private int sinceDecrease = 0;
+    private boolean slowStart = true;
+    private int limit;
+    private int inFlight = 0;
+    private long lastP99Nanos = 0;
+
+    /**
+     * Creates an adaptive limiter.
+     *
+     * @param initialLimit The starting limit.
+     * @param minLimit The lowest limit.
+     * @param maxLimit The highest limit.
+     * @param targetP99Nanos The p99 latency to stay under, in nanoseconds.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetP99Nanos) {
+        this(true, initialLimit, minLimit, maxLimit, targetP99Nanos);
+    }
+
+    private ConcurrencyLimiter(boolean adaptive, int initialLimit, int minLimit, int maxLimit, long targetP99Nanos) {
+        this.adaptive = adaptive;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetP99Nanos = targetP99Nanos;
+    }
+
+    /**
+     * Creates a limiter with a limit that never changes.
+     *
+     * @param limit The number of requests allowed in flight.
+     * @return The limiter.
+     */
+    public static ConcurrencyLimiter fixed(int limit) {
+        return new ConcurrencyLimiter(false, limit, limit, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Waits until a request may be sent.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+    }
+
+    /**
+     * Records the outcome of a request sent after `acquire`.
+     *
+     * @param latencyNanos How long the request took.
+     * @param dropped Whether the server was busy, timed out or was unreachable.
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+        inFlight--;
+        if (adaptive) {
+            window[windowCount++] = latencyNanos;
+            // Requests sent before the last cut may still come back dropped; they should not cut the limit again
+            dropped &= ++sinceDecrease > limit;
+            windowDropped |= dropped;
+            if (dropped || windowCount == WINDOW_SIZE) {
+                adjust();
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records the outcome of a request sent after `acquire` whose latency was not measured, for example because it
+     * failed before it reached the server.
+     *
+     * @param dropped Whether the server was busy, timed out or was unreachable.
+     */
+    public synchronized void release(boolean dropped) {
+        inFlight--;
+        if (adaptive) {
+            dropped &= ++sinceDecrease > limit;
+            windowDropped |= dropped;
+            if (dropped) {
+                adjust();
+            }
+        }
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return The p99 latency of the last complete window, in nanoseconds.
+     */
+    public synchronized long getLastP99Nanos() {
+        return lastP99Nanos;
+    }
+
+    private void adjust() {
+        long p99 = 0;
+        if (windowCount > 0) {
+            long[] sorted = Arrays.copyOf(window, windowCount);
+            Arrays.sort(sorted);
+            p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        }
+        if (windowCount == WINDOW_SIZE) {
+            lastP99Nanos = p99;
+        }
+
+        if (windowDropped || (windowCount == WINDOW_SIZE && p99 > targetP99Nanos)) {
+            limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+            slowStart = false;
+            sinceDecrease = 0;
+        } else if (windowMaxInFlight >= limit) {
+            limit = Math.min(maxLimit, slowStart ? limit * 2 : limit + 1);
+        }
+        windowCount = 0;
+        windowDropped = false;
+        windowMaxInFlight = inFlight;
+    }
+}
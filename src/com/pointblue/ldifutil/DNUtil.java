@@ -0,0 +1,151 @@
+package com.pointblue.ldifutil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The `DNUtil` class contains helpers for working with distinguished names (DNs): splitting them into RDNs,
+ * normalizing them for comparison, and building sort and hash keys.
+ */
+public class DNUtil {
+
+    /** Separator between RDNs in a hierarchy key. It sorts below every character that can appear in an RDN. */
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    private DNUtil() {
+    }
+
+    /**
+     * Splits a DN into its RDNs, honouring backslash escapes and quoted values.
+     *
+     * @param dn The DN to split.
+     * @return The RDNs from leftmost (the entry itself) to rightmost (the root), trimmed.
+     */
+    public static List<String> splitRDNs(String dn) {
+        List<String> rdns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < dn.length(); i++) {
+            char c = dn.charAt(i);
+            if (c == '\\' && i + 1 < dn.length()) {
+                current.append(c).append(dn.charAt(++i));
+            } else if (c == '"') {
+                quoted = !quoted;
+                current.append(c);
+            } else if ((c == ',' || c == ';') && !quoted) {
+                rdns.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0 || !rdns.isEmpty()) {
+            rdns.add(current.toString().trim());
+        }
+        return rdns;
+    }
+
+    /**
+     * Normalizes an RDN: lower case, with the spaces around `=` and `+` removed.
+     *
+     * @param rdn The RDN to normalize.
+     * @return The normalized RDN.
+     */
+    public static String normalizeRDN(String rdn) {
+        StringBuilder out = new StringBuilder(rdn.length());
+        String lower = rdn.toLowerCase();
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c == '\\' && i + 1 < lower.length()) {
+                out.append(c).append(lower.charAt(++i));
+            } else if (c == '=' || c == '+') {
+                while (out.length() > 0 && out.charAt(out.length() - 1) == ' ') {
+                    out.setLength(out.length() - 1);
+                }
+                out.append(c);
+                while (i + 1 < lower.length() && lower.charAt(i + 1) == ' ') i++;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Normalizes a DN so that equivalent spellings compare equal.
+     *
+     * @param dn The DN to normalize.
+     * @return The normalized DN, RDNs joined with `,`.
+     */
+    public static String normalize(String dn) {
+        StringBuilder out = new StringBuilder(dn.length());
+        for (String rdn : splitRDNs(dn)) {
+            if (out.length() > 0) out.append(',');
+            out.append(normalizeRDN(rdn));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Builds a hierarchy sort key: the normalized RDNs in reverse order, root first.
+     * A parent's key is a prefix of each child's key, so sorting by it puts every parent before its children.
+     *
+     * @param dn The DN.
+     * @return The hierarchy key.
+     */
+    public static String hierarchyKey(String dn) {
+        List<String> rdns = splitRDNs(dn);
+        StringBuilder key = new StringBuilder(dn.length());
+        for (int i = rdns.size() - 1; i >= 0; i--) {
+            key.append(normalizeRDN(rdns.get(i)));
+            if (i > 0) key.append(KEY_SEPARATOR);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the normalized DN of the parent entry.
+     *
+     * @param dn The DN.
+     * @return The normalized parent DN, or an empty string for a DN with a single RDN.
+     */
+    public static String parent(String dn) {
+        List<String> rdns = splitRDNs(dn);
+        StringBuilder out = new StringBuilder(dn.length());
+        for (int i = 1; i < rdns.size(); i++) {
+            if (out.length() > 0) out.append(',');
+            out.append(normalizeRDN(rdns.get(i)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Computes a 64-bit hash of a normalized DN (FNV-1a followed by a MurmurHash3 finalizer).
+     *
+     * @param normalizedDN The normalized DN.
+     * @return The hash.
+     */
+    public static long hash64(String normalizedDN) {
+        return hash64(normalizedDN.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes a 64-bit hash of any bytes, such as an attribute value, in the same way as `hash64(String)`.
+     *
+     * @param bytes The bytes to hash.
+     * @return The hash.
+     */
+    public static long hash64(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,25 +1,47 @@
 package com.pointblue.ldifutil;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import javax.naming.*;
 import javax.naming.directory.*;
 
 /**
  * The `LDIFAttr2DirAttrCompare` class compares an attribute from an LDIF file with the corresponding attribute in an LDAP directory.
  * It reads the LDIF file, extracts the specified attribute, and compares it with the attribute in the LDAP directory.
+ * <p>
+ * Long runs can be made resumable with `--checkpoint`: every few thousand records the input byte offset, record count
+ * and output position are saved, and `--resume` continues from the last checkpoint. Directory errors for an entry are
+ * retried with exponential backoff, reconnecting if the connection was lost.
+ * <p>
+ * Entries can be compared in parallel with `--concurrency`, or with `--adaptive`, which lets a `ConcurrencyLimiter`
+ * raise the number of requests in flight while the directory keeps its p99 latency under the target, and back off
+ * when it slows down or reports that it is busy. Results are still written in input order.
  */
 public class LDIFAttr2DirAttrCompare {
 
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+    private static final int DEFAULT_RETRIES = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final long DEFAULT_TARGET_P99_MILLIS = 50;
+    private static final int DEFAULT_MAX_CONCURRENCY = 64;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** How long a connection beyond the current limit stays idle before it is closed. */
+    private static final long CONNECTION_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     /**
      * The main method to execute the comparison.
      *
-     * @param args Command line arguments. Expects 6 arguments:
+     * @param args Command line arguments. Expects 6 arguments followed by options:
      *             <input-file> <attribute-to-extract> <ldap-url> <base-dn> <ldap-username> <ldap-password>
+     *             [--output <file>] [--checkpoint <file>] [--checkpoint-every <records>] [--resume] [--retries <n>]
+     *             [--concurrency <n>] [--adaptive] [--target-p99 <ms>] [--max-concurrency <n>] [--context-factory <class>]
      */
     public static void main(String[] args) {
-        if (args.length != 6) {
-            System.out.println("Usage: java com.pointblue.ldifutil.LDIFAttr2DirAttrCompare <input-file> <attribute-to-extract> <ldap-url> <base-dn> <ldap-username> <ldap-password>");
+        if (args.length < 6) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFAttr2DirAttrCompare <input-file> <attribute-to-extract> <ldap-url> <base-dn> <ldap-username> <ldap-password> [--output <file>] [--checkpoint <file>] [--checkpoint-every <records>] [--resume] [--retries <n>] [--concurrency <n>] [--adaptive] [--target-p99 <ms>] [--max-concurrency <n>] [--context-factory <class>]");
             System.exit(1);
         }
 
@@ -29,89 +51,275 @@ public class LDIFAttr2DirAttrCompare {
         String baseDN = args[3];
         String ldapUsername = args[4];
         String ldapPassword = args[5];
+        String outputFile = null;
+        String checkpointFile = null;
+        int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        boolean resume = false;
+        int retries = DEFAULT_RETRIES;
+        int concurrency = 1;
+        boolean adaptive = false;
+        long targetP99Millis = DEFAULT_TARGET_P99_MILLIS;
+        int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        String contextFactory = "com.sun.jndi.ldap.LdapCtxFactory";
+        for (int i = 6; i < args.length; i++) {
+            switch (args[i]) {
+                case "--output":
+                    outputFile = args[++i];
+                    break;
+                case "--checkpoint":
+                    checkpointFile = args[++i];
+                    break;
+                case "--checkpoint-every":
+                    checkpointInterval = Integer.parseInt(args[++i]);
+                    break;
+                case "--resume":
+                    resume = true;
+                    break;
+                case "--retries":
+                    retries = Integer.parseInt(args[++i]);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--adaptive":
+                    adaptive = true;
+                    break;
+                case "--target-p99":
+                    targetP99Millis = Long.parseLong(args[++i]);
+                    break;
+                case "--max-concurrency":
+                    maxConcurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--context-factory":
+                    contextFactory = args[++i];
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (resume && checkpointFile == null) {
+            System.out.println("--resume needs --checkpoint <file>");
+            System.exit(1);
+        }
+        if (concurrency < 1 || maxConcurrency < 1) {
+            System.out.println("--concurrency and --max-concurrency must be at least 1");
+            System.exit(1);
+        }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            boolean inRecord = false;
-            String currentDN = "";
-            boolean inMultiLineValue = false;
-            List<String> attributeValues = new ArrayList<>();
-
-            Hashtable<String, String> env = new Hashtable<>();
-            if(ldapUrl.startsWith("ldaps://")) {
-                env.put(javax.naming.Context.SECURITY_PROTOCOL, "ssl");
-                env.put("java.naming.ldap.factory.socket",
-                        "com.pointblue.ldifutil.JndiSocketFactory");
-            }
-            env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-            env.put(Context.PROVIDER_URL, ldapUrl);
-            env.put(Context.SECURITY_AUTHENTICATION, "simple");
-            env.put(Context.SECURITY_PRINCIPAL, ldapUsername);
-            env.put(Context.SECURITY_CREDENTIALS, ldapPassword);
-
-            DirContext ctx = new InitialDirContext(env);
-
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("dn:")) {
-                    if (!currentDN.isEmpty() && !attributeValues.isEmpty()) {
-                        compareAndPrint(currentDN, attributeValues, attributeToExtract, ctx, baseDN);
-                    }
-                    currentDN = line.trim();
-                    if(!currentDN.endsWith(baseDN)){
-                        line = reader.readLine();
-                        currentDN += line.trim();
-                    }
-                    inRecord = true;
-                    inMultiLineValue = false;
-                    attributeValues.clear();
-                } else if (line.isEmpty()) {
-                    if (!currentDN.isEmpty() && !attributeValues.isEmpty()) {
-                        compareAndPrint(currentDN, attributeValues, attributeToExtract, ctx, baseDN);
-                    }
-                    inRecord = false;
-                    inMultiLineValue = false;
-                } else if (inRecord) {
-                    if (line.startsWith(" ")) {
-                        if (inMultiLineValue && !attributeValues.isEmpty()) {
-                            String lastValue = attributeValues.remove(attributeValues.size() - 1);
-                            attributeValues.add(lastValue + "\n" + line.trim());
+        Hashtable<String, String> env = new Hashtable<>();
+        if(ldapUrl.startsWith("ldaps://")) {
+            env.put(javax.naming.Context.SECURITY_PROTOCOL, "ssl");
+            env.put("java.naming.ldap.factory.socket",
+                    "com.pointblue.ldifutil.JndiSocketFactory");
+        }
+        env.put(Context.INITIAL_CONTEXT_FACTORY, contextFactory);
+        env.put(Context.PROVIDER_URL, ldapUrl);
+        env.put(Context.SECURITY_AUTHENTICATION, "simple");
+        env.put(Context.SECURITY_PRINCIPAL, ldapUsername);
+        env.put(Context.SECURITY_CREDENTIALS, ldapPassword);
+
+        Checkpoint checkpoint = new Checkpoint();
+        if (resume) {
+            try {
+                checkpoint = Checkpoint.load(checkpointFile, inputFile, attributeToExtract);
+                System.err.println("Resuming after record " + checkpoint.records + " at byte " + checkpoint.inputOffset);
+            } catch (IOException e) {
+                System.err.println("Cannot resume: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        ConcurrencyLimiter limiter = adaptive
+                ? new ConcurrencyLimiter(1, 1, maxConcurrency, targetP99Millis * 1000000L)
+                : ConcurrencyLimiter.fixed(concurrency);
+        int threads = adaptive ? maxConcurrency : concurrency;
+        int maxRetries = retries;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ConnectionPool connections = new ConnectionPool(env);
+
+        FileOutputStream fileOut = null;
+        PrintStream out = System.out;
+        boolean failed = false;
+        try {
+            if (outputFile != null) {
+                fileOut = new FileOutputStream(outputFile, resume);
+                if (resume && checkpoint.outputPosition >= 0) {
+                    // Drop anything written after the checkpoint
+                    fileOut.getChannel().truncate(checkpoint.outputPosition);
+                }
+                out = new PrintStream(new BufferedOutputStream(fileOut, 64 * 1024));
+            }
+
+            // Results are written in input order, so the checkpoint always covers a prefix of the input
+            Deque<Pending> pending = new ArrayDeque<>();
+            Progress progress = new Progress(checkpoint, checkpointFile, checkpointInterval, inputFile, attributeToExtract,
+                    retries, out, fileOut, adaptive ? limiter : null);
+            try (LDIFReader reader = LDIFReader.open(inputFile, checkpoint.inputOffset, false)) {
+                LDIFRecord record;
+                while ((record = reader.next()) != null) {
+                    List<String> attributeValues = new ArrayList<>();
+                    for (int i = 0; i < record.size(); i++) {
+                        if (record.getName(i).equalsIgnoreCase(attributeToExtract)) {
+                            attributeValues.add(record.getValueString(i));
                         }
+                    }
+                    Future<String> result;
+                    if (attributeValues.isEmpty()) {
+                        result = CompletableFuture.completedFuture("");
                     } else {
-                        String[] parts = line.split(":", 2);
-                        if (parts.length == 2) {
-                            String attributeName = parts[0].trim().toLowerCase();
-                            if (attributeName.equals(attributeToExtract)) {
-                                inMultiLineValue = parts[1].trim().isEmpty();
-                                attributeValues.add(parts[1].trim());
-                            } else {
-                                inMultiLineValue = false;
-                            }
-                        }
+                        String dn = record.getDN();
+                        String dnLine = record.getDNLine();
+                        result = executor.submit(() -> compareWithRetry(dn, dnLine, attributeValues, attributeToExtract,
+                                connections, baseDN, maxRetries, limiter));
+                    }
+                    pending.add(new Pending(record.getDN(), result, reader.getPosition()));
+                    while (pending.size() >= threads * 4 || pending.peek().result.isDone()) {
+                        progress.write(pending.poll());
+                        if (pending.isEmpty()) break;
                     }
                 }
             }
-            if (!currentDN.isEmpty() && !attributeValues.isEmpty()) {
-                compareAndPrint(currentDN, attributeValues, attributeToExtract, ctx, baseDN);
+            while (!pending.isEmpty()) {
+                progress.write(pending.poll());
+            }
+            out.flush();
+            if (checkpointFile != null) {
+                Files.deleteIfExists(Paths.get(checkpointFile));
             }
-            ctx.close();
         } catch (IOException | NamingException e) {
             System.err.println("An error occurred: " + e.getMessage());
             e.printStackTrace();
+            failed = true;
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(MAX_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            connections.close();
+            out.flush();
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                } catch (IOException e) {
+                    // Already reported or nothing to report
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
         }
     }
 
+    /**
+     * Flushes the output and saves a checkpoint of the progress so far.
+     */
+    private static void saveCheckpoint(Checkpoint checkpoint, String checkpointFile, String inputFile, String attribute,
+                                       PrintStream out, FileOutputStream fileOut) throws IOException {
+        out.flush();
+        checkpoint.outputPosition = fileOut != null ? fileOut.getChannel().position() : -1;
+        checkpoint.save(checkpointFile, inputFile, attribute);
+    }
+
+    /**
+     * Compares one entry. Transient directory errors are retried with exponential backoff, and a lost connection is
+     * reopened before the next attempt. Any other error only concerns this entry, so it is reported in the result and
+     * the run goes on. Every attempt holds a permit from the limiter and reports its search latency back to it; the
+     * time spent binding a new connection is not counted, since it says nothing about how busy the directory is.
+     *
+     * @param dn The decoded DN of the entry, which is searched for.
+     * @param dnLine The `dn:` line of the entry, which is printed.
+     * @return The result for the entry, as it is printed.
+     * @throws NamingException If the credentials are rejected, or a transient error persists after all retries.
+     */
+    private static String compareWithRetry(String dn, String dnLine, List<String> ldifValues, String attributeName,
+                                           ConnectionPool connections, String baseDN, int retries, ConcurrencyLimiter limiter) throws NamingException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedNamingException("Interrupted while waiting to search " + dn);
+            }
+            // Only taken while holding a permit, so there are never more connections than the limit has allowed
+            Connection connection = connections.borrow();
+            long start = 0;
+            boolean searched = false;
+            boolean dropped = false;
+            NamingException error;
+            try {
+                DirContext ctx = connection.get();
+                start = System.nanoTime();
+                searched = true;
+                StringWriter buffer = new StringWriter();
+                try (PrintWriter result = new PrintWriter(buffer)) {
+                    compareAndPrint(dn, dnLine, ldifValues, attributeName, ctx, baseDN, result);
+                }
+                return buffer.toString();
+            } catch (NameNotFoundException e) {
+                return dnLine + ":" + System.lineSeparator() + "  - Entry not found in directory." + System.lineSeparator();
+            } catch (AuthenticationException e) {
+                // Retrying will not fix bad credentials, and no other entry will fare better
+                throw e;
+            } catch (NamingException e) {
+                error = e;
+                dropped = isTransient(e);
+                if (e instanceof CommunicationException || e instanceof ServiceUnavailableException) {
+                    connection.reset();
+                }
+            } finally {
+                // Returned before the permit, so the next request finds it idle instead of opening another one
+                connections.giveBack(connection, limiter.getLimit());
+                if (searched) {
+                    limiter.release(System.nanoTime() - start, dropped);
+                } else {
+                    limiter.release(dropped);
+                }
+            }
+
+            if (!dropped) {
+                return dnLine + ":" + System.lineSeparator() + "  - Error: " + error + System.lineSeparator();
+            }
+            if (attempt >= retries) {
+                throw error;
+            }
+            System.err.println("Retrying " + dnLine + " in " + backoff + " ms: " + error);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw error;
+            }
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    /**
+     * Checks whether an error is transient: the directory is busy, over a time or size limit, or unreachable.
+     * These errors are retried, and they also tell the limiter that the directory is overloaded.
+     */
+    private static boolean isTransient(NamingException e) {
+        return e instanceof ServiceUnavailableException
+                || e instanceof LimitExceededException
+                || e instanceof CommunicationException;
+    }
+
     /**
      * Compares the attribute values from the LDIF file with the corresponding attribute in the LDAP directory.
      *
-     * @param dn The distinguished name (DN) of the entry.
+     * @param entryDN The decoded DN of the entry.
+     * @param dn The `dn:` line of the entry.
      * @param ldifValues The attribute values from the LDIF file.
      * @param attributeName The name of the attribute to compare.
      * @param ctx The LDAP directory context.
      * @param baseDN The base DN for the LDAP search.
+     * @param out The writer to print the result to.
      * @throws NamingException If an error occurs while accessing the LDAP directory.
      */
-    private static void compareAndPrint(String dn, List<String> ldifValues, String attributeName, DirContext ctx, String baseDN) throws NamingException {
-        String entryDN = dn.split(":", 2)[1].trim();
+    private static void compareAndPrint(String entryDN, String dn, List<String> ldifValues, String attributeName, DirContext ctx, String baseDN, PrintWriter out) throws NamingException {
         SearchControls controls = new SearchControls();
         controls.setSearchScope(SearchControls.OBJECT_SCOPE);
         controls.setReturningAttributes(new String[]{attributeName});
@@ -121,7 +329,7 @@ public class LDIFAttr2DirAttrCompare {
             SearchResult result = (SearchResult) results.next();
             Attributes attrs = result.getAttributes();
             Attribute attr = attrs.get(attributeName);
-            System.out.println(dn + ":");
+            out.println(dn + ":");
 
             if (attr != null) {
                 List<String> directoryValues = new ArrayList<>();
@@ -138,19 +346,224 @@ public class LDIFAttr2DirAttrCompare {
                             break;
                         }
                     }
-                    System.out.println("  - LDIF: " + ldifValue + " - Match in directory: " + (matchFound ? "Yes" : "No"));
+                    out.println("  - LDIF: " + ldifValue + " - Match in directory: " + (matchFound ? "Yes" : "No"));
                 }
 
                 for (String dirValue : directoryValues) {
                     if (!ldifValues.contains(dirValue)) {
-                        System.out.println("  - Directory only: " + dirValue);
+                        out.println("  - Directory only: " + dirValue);
                     }
                 }
             } else {
-                System.out.println("  - Attribute not found in directory.");
+                out.println("  - Attribute not found in directory.");
             }
         } else {
-            System.out.println("  - Entry not found in directory.");
+            out.println("  - Entry not found in directory.");
+        }
+    }
+
+    /**
+     * A record that was handed to a worker: its DN, the result to print, and the input position after it.
+     */
+    private static class Pending {
+        final String dn;
+        final Future<String> result;
+        final long position;
+
+        Pending(String dn, Future<String> result, long position) {
+            this.dn = dn;
+            this.result = result;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Writes results in input order and keeps the checkpoint in step with what has been written.
+     */
+    private static class Progress {
+        private final Checkpoint checkpoint;
+        private final String checkpointFile;
+        private final int checkpointInterval;
+        private final String inputFile;
+        private final String attribute;
+        private final int retries;
+        private final PrintStream out;
+        private final FileOutputStream fileOut;
+        private final ConcurrencyLimiter limiter;
+        private long sinceCheckpoint = 0;
+        private long lastReport = System.nanoTime();
+
+        /**
+         * @param limiter The adaptive limiter to report on now and then, or `null` for a fixed limit.
+         */
+        Progress(Checkpoint checkpoint, String checkpointFile, int checkpointInterval, String inputFile, String attribute,
+                 int retries, PrintStream out, FileOutputStream fileOut, ConcurrencyLimiter limiter) {
+            this.checkpoint = checkpoint;
+            this.checkpointFile = checkpointFile;
+            this.checkpointInterval = checkpointInterval;
+            this.inputFile = inputFile;
+            this.attribute = attribute;
+            this.retries = retries;
+            this.out = out;
+            this.fileOut = fileOut;
+            this.limiter = limiter;
+        }
+
+        /**
+         * Waits for the result of a record and prints it. If the record failed, the checkpoint is saved first, so a
+         * rerun with `--resume` starts at that record.
+         */
+        void write(Pending entry) throws IOException, NamingException {
+            String result;
+            try {
+                result = entry.result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (checkpointFile != null) {
+                    saveCheckpoint(checkpoint, checkpointFile, inputFile, attribute, out, fileOut);
+                    System.err.println("Giving up on " + entry.dn + " after " + retries
+                            + " retries; rerun with --resume to continue from record " + checkpoint.records);
+                }
+                Throwable cause = e.getCause();
+                if (cause instanceof NamingException) throw (NamingException) cause;
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause);
+            }
+            out.print(result);
+            checkpoint.inputOffset = entry.position;
+            checkpoint.records++;
+            if (checkpointFile != null && ++sinceCheckpoint >= checkpointInterval) {
+                saveCheckpoint(checkpoint, checkpointFile, inputFile, attribute, out, fileOut);
+                sinceCheckpoint = 0;
+            }
+            if (limiter != null && System.nanoTime() - lastReport >= REPORT_INTERVAL_NANOS) {
+                System.err.println("Records: " + checkpoint.records + ", concurrency limit: " + limiter.getLimit()
+                        + ", p99: " + TimeUnit.NANOSECONDS.toMillis(limiter.getLastP99Nanos()) + " ms");
+                lastReport = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Connections shared by the worker threads. A `DirContext` is not thread safe, so each one is used by one request
+     * at a time. Connections are only opened when no idle one is left, so the number of binds follows the concurrency
+     * limit, not the thread count. The most recently used connection is handed out first, so the ones beyond what the
+     * limit needs stay idle; they are closed once they have been idle for `CONNECTION_IDLE_NANOS` while more are open
+     * than the limit allows, so a limit that goes down and back up does not cause a rebind each time.
+     */
+    private static class ConnectionPool {
+        private final Hashtable<String, String> env;
+        private final Deque<Connection> idle = new ArrayDeque<>();
+        private int open = 0;
+
+        ConnectionPool(Hashtable<String, String> env) {
+            this.env = env;
+        }
+
+        synchronized Connection borrow() {
+            Connection connection = idle.pollFirst();
+            if (connection == null) {
+                connection = new Connection(env);
+                open++;
+            }
+            return connection;
+        }
+
+        synchronized void giveBack(Connection connection, int limit) {
+            long now = System.nanoTime();
+            connection.idleSince = now;
+            idle.addFirst(connection);
+            while (open > limit && now - idle.peekLast().idleSince >= CONNECTION_IDLE_NANOS) {
+                idle.pollLast().close();
+                open--;
+            }
+        }
+
+        synchronized void close() {
+            for (Connection connection : idle) {
+                connection.close();
+            }
+            idle.clear();
+        }
+    }
+
+    /**
+     * Holds the directory context and reopens it after a connection failure.
+     */
+    private static class Connection {
+        private final Hashtable<String, String> env;
+        private DirContext ctx;
+        long idleSince;
+
+        Connection(Hashtable<String, String> env) {
+            this.env = env;
+        }
+
+        DirContext get() throws NamingException {
+            if (ctx == null) {
+                ctx = new InitialDirContext(env);
+            }
+            return ctx;
+        }
+
+        void reset() {
+            close();
+        }
+
+        void close() {
+            if (ctx != null) {
+                try {
+                    ctx.close();
+                } catch (NamingException e) {
+                    // The connection is being dropped anyway
+                }
+                ctx = null;
+            }
+        }
+    }
+
+    /**
+     * The progress of a run: where to continue reading, how many records were done, and how much output was written.
+     */
+    private static class Checkpoint {
+        long inputOffset = 0;
+        long records = 0;
+        long outputPosition = -1;
+
+        static Checkpoint load(String checkpointFile, String inputFile, String attribute) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(checkpointFile)) {
+                properties.load(in);
+            }
+            if (!inputFile.equals(properties.getProperty("input")) || !attribute.equals(properties.getProperty("attribute"))) {
+                throw new IOException(checkpointFile + " was written for " + properties.getProperty("input")
+                        + " and attribute " + properties.getProperty("attribute"));
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.inputOffset = Long.parseLong(properties.getProperty("inputOffset"));
+            checkpoint.records = Long.parseLong(properties.getProperty("records"));
+            checkpoint.outputPosition = Long.parseLong(properties.getProperty("outputPosition"));
+            return checkpoint;
+        }
+
+        /**
+         * Writes the checkpoint to a temporary file and renames it, so a crash never leaves a half-written checkpoint.
+         */
+        void save(String checkpointFile, String inputFile, String attribute) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("input", inputFile);
+            properties.setProperty("attribute", attribute);
+            properties.setProperty("inputOffset", Long.toString(inputOffset));
+            properties.setProperty("records", Long.toString(records));
+            properties.setProperty("outputPosition", Long.toString(outputPosition));
+            Path target = Paths.get(checkpointFile);
+            Path temp = Paths.get(checkpointFile + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp.toFile())) {
+                properties.store(out, "LDIFAttr2DirAttrCompare checkpoint");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
     }
-}
\ No newline at end of file
+}
@@ -24,6 +24,11 @@ public class LDIFAttributeExtractor {
         String inputFile = args[0];
         String attributeToExtract = args[1].toLowerCase();  // Case-insensitive attribute name
 
+        if (LDIFBinaryReader.isBinaryLDIF(inputFile)) {
+            extractBinary(inputFile, attributeToExtract);
+            return;
+        }
+
         try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
             String line;
             boolean inRecord = false;
@@ -90,6 +95,34 @@ public class LDIFAttributeExtractor {
         }
     }
 
+    /**
+     * Extracts the attribute from a binary LDIF cache. Chunks of records are formatted in parallel and printed in file order.
+     *
+     * @param inputFile The binary LDIF file.
+     * @param attributeToExtract The lower case attribute name.
+     */
+    private static void extractBinary(String inputFile, String attributeToExtract) {
+        try (LDIFBinaryReader reader = new LDIFBinaryReader(inputFile)) {
+            reader.processInChunks(Runtime.getRuntime().availableProcessors(), records -> {
+                StringBuilder out = new StringBuilder();
+                LDIFRecord record;
+                while ((record = records.next()) != null) {
+                    List<String> values = record.getValues(attributeToExtract);
+                    if (!values.isEmpty()) {
+                        out.append(record.getDNLine()).append(":").append(System.lineSeparator());
+                        for (String value : values) {
+                            out.append("  - ").append(value).append(System.lineSeparator());
+                        }
+                    }
+                }
+                return out;
+            }, System.out::print);
+        } catch (IOException e) {
+            System.err.println("An error occurred while reading the file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Prints the DN and the extracted attribute values.
      *
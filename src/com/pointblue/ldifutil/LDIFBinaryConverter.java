@@ -0,0 +1,42 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+
+/**
+ * The `LDIFBinaryConverter` class converts a text LDIF file to the binary LDIF cache format.
+ * The other tools detect the binary format by its magic bytes and read it directly, skipping text parsing.
+ */
+public class LDIFBinaryConverter {
+
+    /**
+     * The main method to execute the conversion.
+     *
+     * @param args Command line arguments. Expects 2 arguments:
+     *             <input-file> <output-file>
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFBinaryConverter <input-file> <output-file>");
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+        String outputFile = args[1];
+
+        try (LDIFReader reader = new LDIFReader(inputFile);
+             LDIFBinaryWriter writer = new LDIFBinaryWriter(outputFile)) {
+            LDIFRecord record;
+            long count = 0;
+            while ((record = reader.next()) != null) {
+                writer.write(record);
+                count++;
+            }
+            writer.finish();
+            System.out.println("Converted " + count + " records to " + outputFile);
+        } catch (IOException e) {
+            System.err.println("An error occurred while converting the file: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
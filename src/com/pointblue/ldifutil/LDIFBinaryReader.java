@@ -0,0 +1,245 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+/**
+ * The `LDIFBinaryReader` class reads the binary LDIF cache format written by `LDIFBinaryWriter`.
+ * Records are read with positional reads, so any number of cursors can read different ranges of the file at once,
+ * and `processInChunks` uses the record offset table to split work across threads.
+ */
+public class LDIFBinaryReader implements Closeable {
+
+    /** Number of records handed to a worker thread at a time. */
+    private static final int CHUNK_RECORDS = 10000;
+
+    private final FileChannel channel;
+    private final long recordCount;
+    private final long nameTableOffset;
+    private final String[] names;
+    private final LongBuffer offsets;
+
+    /**
+     * Opens a binary LDIF cache file.
+     *
+     * @param fileName The name of the file to read.
+     * @throws IOException If the file cannot be read or is not a binary LDIF cache.
+     */
+    public LDIFBinaryReader(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(LDIFBinaryWriter.HEADER_SIZE);
+            readFully(header, 0);
+            byte[] magic = new byte[LDIFBinaryWriter.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, LDIFBinaryWriter.MAGIC)) {
+                throw new IOException(fileName + " is not a binary LDIF file");
+            }
+            recordCount = header.getLong();
+            nameTableOffset = header.getLong();
+            long offsetTableOffset = header.getLong();
+
+            DataInputStream nameIn = new DataInputStream(new BufferedInputStream(new ChannelInputStream(nameTableOffset)));
+            names = new String[nameIn.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[nameIn.readInt()];
+                nameIn.readFully(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetTableOffset, recordCount * 8).asLongBuffer();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether a file starts with the binary LDIF magic bytes.
+     *
+     * @param fileName The name of the file to check.
+     * @return `true` if the file is a binary LDIF cache, `false` otherwise.
+     */
+    public static boolean isBinaryLDIF(String fileName) {
+        byte[] magic = new byte[LDIFBinaryWriter.MAGIC.length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            in.readFully(magic);
+        } catch (IOException e) {
+            return false;
+        }
+        return Arrays.equals(magic, LDIFBinaryWriter.MAGIC);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns a cursor over a range of records. Cursors are independent and may be used from different threads.
+     *
+     * @param from The index of the first record.
+     * @param to The index after the last record.
+     * @return A record source over the range.
+     */
+    public LDIFRecordSource cursor(long from, long to) {
+        long start = from < recordCount ? offsets.get((int) from) : nameTableOffset;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new ChannelInputStream(start), 64 * 1024));
+        return new LDIFRecordSource() {
+            long index = from;
+
+            public LDIFRecord next() throws IOException {
+                if (index >= to) return null;
+                in.readInt();
+                LDIFRecord record = readBody(in, i -> names[i]);
+                record.setOffset(index++);
+                return record;
+            }
+
+            public String nextDN() throws IOException {
+                if (index >= to) return null;
+                int length = in.readInt();
+                byte[] dn = new byte[in.readInt()];
+                in.readFully(dn);
+                for (int skip = length - 4 - dn.length; skip > 0; ) {
+                    int skipped = in.skipBytes(skip);
+                    if (skipped <= 0) throw new EOFException();
+                    skip -= skipped;
+                }
+                index++;
+                return new String(dn, StandardCharsets.UTF_8);
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Reads a single record by index.
+     *
+     * @param index The index of the record.
+     * @return The record.
+     * @throws IOException If the record cannot be read.
+     */
+    public LDIFRecord read(long index) throws IOException {
+        try (LDIFRecordSource source = cursor(index, index + 1)) {
+            return source.next();
+        }
+    }
+
+    /**
+     * Processes the file in chunks of records on a pool of threads. Results are handed to the consumer on the calling
+     * thread in file order, and only a few chunks are in flight at once so memory stays bounded.
+     *
+     * @param threads The number of worker threads.
+     * @param processor Processes one chunk of records.
+     * @param consumer Receives the chunk results in order.
+     * @throws IOException If a chunk cannot be read or processed.
+     */
+    public <T> void processInChunks(int threads, ChunkProcessor<T> processor, ChunkConsumer<T> consumer) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<T>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < recordCount || !pending.isEmpty()) {
+                while (next < recordCount && pending.size() < threads * 2) {
+                    long from = next;
+                    long to = Math.min(recordCount, from + CHUNK_RECORDS);
+                    pending.add(executor.submit(() -> processor.process(cursor(from, to))));
+                    next = to;
+                }
+                consumer.accept(pending.poll().get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the body of a record written by `LDIFBinaryWriter.writeBody`.
+     *
+     * @param in The stream to read from.
+     * @param names Maps a name table index to the attribute name.
+     * @return The record.
+     * @throws IOException If the record cannot be read.
+     */
+    static LDIFRecord readBody(DataInputStream in, IntFunction<String> names) throws IOException {
+        byte[] dn = new byte[in.readInt()];
+        in.readFully(dn);
+        LDIFRecord record = new LDIFRecord(new String(dn, StandardCharsets.UTF_8));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = names.apply(in.readInt());
+            int type = in.readByte();
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            record.add(name, value, type);
+        }
+        return record;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Processes one chunk of records.
+     */
+    public interface ChunkProcessor<T> {
+        T process(LDIFRecordSource records) throws IOException;
+    }
+
+    /**
+     * Receives the result of one chunk.
+     */
+    public interface ChunkConsumer<T> {
+        void accept(T result) throws IOException;
+    }
+
+    /**
+     * An input stream over the channel using positional reads, so it does not share the channel position.
+     */
+    private class ChannelInputStream extends InputStream {
+        private long position;
+
+        ChannelInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (count > 0) position += count;
+            return count;
+        }
+    }
+}
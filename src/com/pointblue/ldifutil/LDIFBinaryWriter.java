@@ -0,0 +1,162 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * The `LDIFBinaryWriter` class writes LDIF records to the binary LDIF cache format read by `LDIFBinaryReader`.
+ * <p>
+ * Layout (all integers big-endian):
+ * <pre>
+ *   header:  magic "LDIFBIN1", long record count, long name table offset, long offset table offset
+ *   records: int body length, then body = int DN length, DN bytes, int value count,
+ *            and per value: int name index, byte type, int value length, value bytes
+ *   names:   int name count, then per name: int length, UTF-8 bytes
+ *   offsets: long start offset of every record
+ * </pre>
+ * Attribute names are dictionary encoded in the name table and values are stored already base64 decoded.
+ * <p>
+ * The file is written under a temporary name and only renamed to its real name by `finish()`, so a conversion that
+ * fails partway never leaves a truncated cache that looks complete.
+ */
+public class LDIFBinaryWriter implements Closeable {
+
+    static final byte[] MAGIC = {'L', 'D', 'I', 'F', 'B', 'I', 'N', '1'};
+    static final int HEADER_SIZE = MAGIC.length + 3 * 8;
+
+    private final String fileName;
+    private final String tempFileName;
+    private final DataOutputStream out;
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    private long[] offsets = new long[1024];
+    private long recordCount = 0;
+    private long position;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a binary LDIF cache file.
+     *
+     * @param fileName The name of the file to write.
+     * @throws IOException If the file cannot be created.
+     */
+    public LDIFBinaryWriter(String fileName) throws IOException {
+        this.fileName = fileName;
+        this.tempFileName = fileName + ".tmp";
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFileName), 256 * 1024));
+        // The header is rewritten with the real counts by finish()
+        out.write(MAGIC);
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeLong(0);
+        position = HEADER_SIZE;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record The record to write.
+     * @throws IOException If the record cannot be written.
+     */
+    public void write(LDIFRecord record) throws IOException {
+        body.reset();
+        writeBody(bodyOut, record, this::indexOf);
+
+        if (recordCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[(int) recordCount++] = position;
+        out.writeInt(body.size());
+        body.writeTo(out);
+        position += 4 + body.size();
+    }
+
+    /**
+     * Writes the name and offset tables and the final header, then renames the file to its real name.
+     * Call this once all records have been written.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void finish() throws IOException {
+        long nameTableOffset = position;
+        out.writeInt(names.size());
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            position += 4 + bytes.length;
+        }
+        position += 4;
+        long offsetTableOffset = position;
+        for (int i = 0; i < recordCount; i++) {
+            out.writeLong(offsets[i]);
+        }
+        closed = true;
+        out.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(tempFileName, "rw")) {
+            file.seek(MAGIC.length);
+            file.writeLong(recordCount);
+            file.writeLong(nameTableOffset);
+            file.writeLong(offsetTableOffset);
+        }
+        Files.move(Paths.get(tempFileName), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+    /**
+     * Closes the file. If `finish()` was not called, or failed, the temporary file is deleted and no cache is written.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) return;
+        try {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        } finally {
+            Files.deleteIfExists(Paths.get(tempFileName));
+        }
+    }
+
+    /**
+     * Writes the body of a record: its DN and values, with attribute names replaced by their dictionary index.
+     *
+     * @param out The stream to write to.
+     * @param record The record to write.
+     * @param nameIndex Maps an attribute name to its index in the name table.
+     * @throws IOException If the record cannot be written.
+     */
+    static void writeBody(DataOutputStream out, LDIFRecord record, ToIntFunction<String> nameIndex) throws IOException {
+        byte[] dn = record.getDN().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(dn.length);
+        out.write(dn);
+        out.writeInt(record.size());
+        for (int i = 0; i < record.size(); i++) {
+            byte[] value = record.getValue(i);
+            out.writeInt(nameIndex.applyAsInt(record.getName(i)));
+            out.writeByte(record.getType(i));
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private int indexOf(String name) {
+        Integer index = nameIndex.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndex.put(name, index);
+        }
+        return index;
+    }
+}
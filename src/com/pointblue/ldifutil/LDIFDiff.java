@@ -0,0 +1,167 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The `LDIFDiff` class compares two streams of LDIF records by DN and produces the differences as `LDIFDiffEvent`s.
+ * DNs are matched after normalization, and attribute values are compared in order, as the comparator tools do.
+ * <p>
+ * `of` reads the second input into memory and streams the first, so the smaller input should be the second one.
+ * `sorted` streams both inputs side by side and needs both sorted by DN hierarchy, as `LDIFSorter` writes them.
+ */
+public class LDIFDiff extends LDIFPipe<LDIFDiffEvent> {
+
+    private final LDIFRecordSource first;
+    private final LDIFRecordSource second;
+    private final boolean sorted;
+    /** The second input by normalized DN, for the hash join; loaded on the first call to `next()`. */
+    private Map<String, LDIFRecord> secondRecords;
+    private Iterator<LDIFRecord> unmatched;
+    private LDIFRecord firstHead;
+    private LDIFRecord secondHead;
+    private String firstKey;
+    private String secondKey;
+    private boolean started = false;
+
+    private LDIFDiff(LDIFRecordSource first, LDIFRecordSource second, boolean sorted) {
+        this.first = first;
+        this.second = second;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Compares two inputs in any order. The second input is held in memory.
+     *
+     * @param first The first input.
+     * @param second The second input.
+     * @return The differences: entries of the first input in input order, then entries only in the second.
+     */
+    public static LDIFDiff of(LDIFRecordSource first, LDIFRecordSource second) {
+        return new LDIFDiff(first, second, false);
+    }
+
+    /**
+     * Compares two inputs sorted by DN hierarchy, in constant memory.
+     *
+     * @param first The first input.
+     * @param second The second input.
+     * @return The differences, in hierarchy order. `next()` throws an `IOException` if an input turns out not to be
+     *         sorted.
+     */
+    public static LDIFDiff sorted(LDIFRecordSource first, LDIFRecordSource second) {
+        return new LDIFDiff(first, second, true);
+    }
+
+    @Override
+    public LDIFDiffEvent next() throws IOException {
+        return sorted ? nextSorted() : nextHashed();
+    }
+
+    private LDIFDiffEvent nextHashed() throws IOException {
+        if (secondRecords == null) {
+            secondRecords = new LinkedHashMap<>();
+            LDIFRecord record;
+            while ((record = second.next()) != null) {
+                secondRecords.put(DNUtil.normalize(record.getDN()), record);
+            }
+        }
+        if (unmatched == null) {
+            LDIFRecord record;
+            while ((record = first.next()) != null) {
+                LDIFDiffEvent event = compare(record, secondRecords.remove(DNUtil.normalize(record.getDN())));
+                if (event != null) {
+                    return event;
+                }
+            }
+            unmatched = secondRecords.values().iterator();
+        }
+        return unmatched.hasNext() ? compare(null, unmatched.next()) : null;
+    }
+
+    private LDIFDiffEvent nextSorted() throws IOException {
+        if (!started) {
+            advanceFirst();
+            advanceSecond();
+            started = true;
+        }
+        while (firstHead != null || secondHead != null) {
+            int order = firstHead == null ? 1 : secondHead == null ? -1 : firstKey.compareTo(secondKey);
+            LDIFDiffEvent event;
+            if (order < 0) {
+                event = compare(firstHead, null);
+                advanceFirst();
+            } else if (order > 0) {
+                event = compare(null, secondHead);
+                advanceSecond();
+            } else {
+                event = compare(firstHead, secondHead);
+                advanceFirst();
+                advanceSecond();
+            }
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private void advanceFirst() throws IOException {
+        String previous = firstKey;
+        firstHead = first.next();
+        firstKey = firstHead == null ? null : checkOrder(previous, DNUtil.hierarchyKey(firstHead.getDN()), firstHead);
+    }
+
+    private void advanceSecond() throws IOException {
+        String previous = secondKey;
+        secondHead = second.next();
+        secondKey = secondHead == null ? null : checkOrder(previous, DNUtil.hierarchyKey(secondHead.getDN()), secondHead);
+    }
+
+    private static String checkOrder(String previous, String key, LDIFRecord record) throws IOException {
+        if (previous != null && key.compareTo(previous) < 0) {
+            throw new IOException("Input is not sorted by LDIFSorter at DN " + record.getDN());
+        }
+        return key;
+    }
+
+    /**
+     * Compares the two versions of an entry.
+     *
+     * @return The difference, or `null` if the entry is the same in both inputs.
+     */
+    private static LDIFDiffEvent compare(LDIFRecord firstRecord, LDIFRecord secondRecord) {
+        Map<String, List<String>> firstValues = firstRecord != null ? firstRecord.toAttributeMap() : Collections.emptyMap();
+        Map<String, List<String>> secondValues = secondRecord != null ? secondRecord.toAttributeMap() : Collections.emptyMap();
+        Set<String> attributes = new TreeSet<>();
+        for (Map.Entry<String, List<String>> entry : firstValues.entrySet()) {
+            if (!entry.getValue().equals(secondValues.get(entry.getKey()))) {
+                attributes.add(entry.getKey());
+            }
+        }
+        for (String attribute : secondValues.keySet()) {
+            if (!firstValues.containsKey(attribute)) {
+                attributes.add(attribute);
+            }
+        }
+        if (firstRecord == null) {
+            return new LDIFDiffEvent(LDIFDiffEvent.Type.ONLY_IN_SECOND, null, secondRecord, attributes);
+        }
+        if (secondRecord == null) {
+            return new LDIFDiffEvent(LDIFDiffEvent.Type.ONLY_IN_FIRST, firstRecord, null, attributes);
+        }
+        return attributes.isEmpty() ? null : new LDIFDiffEvent(LDIFDiffEvent.Type.CHANGED, firstRecord, secondRecord, attributes);
+    }
+
+    /**
+     * Closes both inputs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.pointblue.ldifutil;
+
+import java.util.*;
+
+/**
+ * The `LDIFDiffEvent` class describes one difference found by `LDIFDiff`: an entry that is only in one of the inputs,
+ * or an entry that is in both with different values.
+ */
+public class LDIFDiffEvent {
+
+    /**
+     * The kind of difference.
+     */
+    public enum Type {
+        /** The entry is only in the first input. */
+        ONLY_IN_FIRST,
+        /** The entry is only in the second input. */
+        ONLY_IN_SECOND,
+        /** The entry is in both inputs, but some attributes differ. */
+        CHANGED
+    }
+
+    private final Type type;
+    private final LDIFRecord first;
+    private final LDIFRecord second;
+    private final Set<String> attributes;
+
+    LDIFDiffEvent(Type type, LDIFRecord first, LDIFRecord second, Set<String> attributes) {
+        this.type = type;
+        this.first = first;
+        this.second = second;
+        this.attributes = Collections.unmodifiableSet(attributes);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The DN of the entry, as written in the first input if it is there.
+     */
+    public String getDN() {
+        return first != null ? first.getDN() : second.getDN();
+    }
+
+    /**
+     * @return The entry in the first input, or `null` if it is only in the second.
+     */
+    public LDIFRecord getFirst() {
+        return first;
+    }
+
+    /**
+     * @return The entry in the second input, or `null` if it is only in the first.
+     */
+    public LDIFRecord getSecond() {
+        return second;
+    }
+
+    /**
+     * @return The lower case names of the attributes that differ, in alphabetical order. For an entry that is only in
+     *         one input, these are all of its attributes.
+     */
+    public Set<String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + getDN() + " " + attributes;
+    }
+}
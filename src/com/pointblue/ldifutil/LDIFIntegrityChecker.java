@@ -0,0 +1,300 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The `LDIFIntegrityChecker` class checks an LDIF file for duplicate DNs and for DN-valued attributes, such as `member`
+ * or `manager`, that point at entries which are not in the file.
+ * <p>
+ * The file is streamed once. Only a 64-bit hash of each normalized DN is kept, in an open-addressing set, or in a Bloom
+ * filter with `--bloom` for very large files. References to entries that have already been seen are resolved at once;
+ * the rest are spilled to a temporary file and checked when the whole file has been read.
+ * <p>
+ * The exit status is 0 if the file is consistent, 2 if dangling references or duplicate DNs were found, and 1 if the
+ * check could not be completed, for example because the file cannot be read or parsed.
+ */
+public class LDIFIntegrityChecker {
+
+    /** Exit status when the check ran and found dangling references or duplicate DNs. */
+    private static final int EXIT_PROBLEMS_FOUND = 2;
+
+    private static final String[] DEFAULT_REFERENCE_ATTRIBUTES = {"member", "uniquemember", "manager", "seealso", "secretary", "owner"};
+    /** False positive rate the Bloom filter is sized for. */
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+    /**
+     * The main method to execute the check.
+     *
+     * @param args Command line arguments. Expects at least 1 argument:
+     *             <input-file> [--attributes <attr1,attr2,...>] [--base <dn>] [--bloom <expected-entries>]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFIntegrityChecker <input-file> [--attributes <attr1,attr2,...>] [--base <dn>] [--bloom <expected-entries>]");
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+        Set<String> referenceAttributes = new HashSet<>(Arrays.asList(DEFAULT_REFERENCE_ATTRIBUTES));
+        String baseDN = null;
+        long bloomEntries = 0;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--attributes":
+                    referenceAttributes.clear();
+                    for (String attribute : args[++i].split(",")) {
+                        referenceAttributes.add(attribute.trim().toLowerCase());
+                    }
+                    break;
+                case "--base":
+                    baseDN = DNUtil.normalize(args[++i]);
+                    break;
+                case "--bloom":
+                    bloomEntries = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        DNSet dns = bloomEntries > 0 ? new BloomFilter(bloomEntries, BLOOM_FALSE_POSITIVE_RATE) : new LongHashSet();
+        File deferredFile = null;
+        int status = 0;
+        try {
+            deferredFile = File.createTempFile("ldifcheck", ".refs");
+            deferredFile.deleteOnExit();
+            long records = 0;
+            long references = 0;
+            long dangling = 0;
+            long duplicates = 0;
+            Set<Long> duplicateCandidates = new HashSet<>();
+
+            try (LDIFRecordSource source = LDIFRecordSource.open(inputFile);
+                 DataOutputStream deferred = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(deferredFile), 256 * 1024))) {
+                LDIFRecord record;
+                while ((record = source.next()) != null) {
+                    records++;
+                    long hash = DNUtil.hash64(DNUtil.normalize(record.getDN()));
+                    if (!dns.add(hash)) {
+                        if (dns.isExact()) {
+                            System.out.println("Duplicate DN: " + record.getDN());
+                            duplicates++;
+                        } else {
+                            duplicateCandidates.add(hash);
+                        }
+                    }
+
+                    for (int i = 0; i < record.size(); i++) {
+                        if (!referenceAttributes.contains(record.getName(i).toLowerCase())) continue;
+                        String target = referenceTarget(record.getValueString(i));
+                        if (target.isEmpty() || (baseDN != null && !target.equals(baseDN) && !target.endsWith("," + baseDN))) {
+                            continue;
+                        }
+                        references++;
+                        long targetHash = DNUtil.hash64(target);
+                        if (!dns.contains(targetHash)) {
+                            // The target may still appear later in the file
+                            deferred.writeLong(targetHash);
+                            deferred.writeUTF(record.getDN());
+                            deferred.writeUTF(record.getName(i));
+                            deferred.writeUTF(record.getValueString(i));
+                        }
+                    }
+                }
+            }
+
+            try (DataInputStream deferred = new DataInputStream(new BufferedInputStream(new FileInputStream(deferredFile), 256 * 1024))) {
+                while (true) {
+                    long targetHash;
+                    try {
+                        targetHash = deferred.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    String dn = deferred.readUTF();
+                    String attribute = deferred.readUTF();
+                    String value = deferred.readUTF();
+                    if (!dns.contains(targetHash)) {
+                        System.out.println("Dangling reference: " + dn + ": " + attribute + ": " + value);
+                        dangling++;
+                    }
+                }
+            }
+
+            if (!duplicateCandidates.isEmpty()) {
+                duplicates = confirmDuplicates(inputFile, duplicateCandidates);
+            }
+
+            System.out.println("Records: " + records);
+            System.out.println("References checked: " + references);
+            System.out.println("Dangling references: " + dangling);
+            System.out.println("Duplicate DNs: " + duplicates);
+            if (!dns.isExact()) {
+                System.out.println("Note: Bloom filter mode may miss up to " + (BLOOM_FALSE_POSITIVE_RATE * 100) + "% of dangling references.");
+            }
+            if (dangling > 0 || duplicates > 0) {
+                status = EXIT_PROBLEMS_FOUND;
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while checking the file: " + e.getMessage());
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            if (deferredFile != null) {
+                deferredFile.delete();
+            }
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Normalizes a reference value to the DN it points at, dropping the optional `#'...'B` unique identifier of
+     * `uniqueMember` values.
+     */
+    private static String referenceTarget(String value) {
+        int hash = value.lastIndexOf("#'");
+        if (hash > 0 && value.endsWith("'B")) {
+            value = value.substring(0, hash);
+        }
+        return DNUtil.normalize(value.trim());
+    }
+
+    /**
+     * Re-reads the DNs of the file to confirm duplicates reported by the Bloom filter, which may be false positives.
+     * Only the DN of each record is read; attribute values are skipped without being decoded.
+     *
+     * @return The number of confirmed duplicate DNs.
+     */
+    private static long confirmDuplicates(String inputFile, Set<Long> candidates) throws IOException {
+        Set<Long> seen = new HashSet<>();
+        long duplicates = 0;
+        try (LDIFRecordSource source = LDIFRecordSource.open(inputFile)) {
+            String dn;
+            while ((dn = source.nextDN()) != null) {
+                long hash = DNUtil.hash64(DNUtil.normalize(dn));
+                if (candidates.contains(hash) && !seen.add(hash)) {
+                    System.out.println("Duplicate DN: " + dn);
+                    duplicates++;
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * A set of DN hashes.
+     */
+    private interface DNSet {
+        /**
+         * @return `false` if the hash was (or, for an inexact set, may have been) present already.
+         */
+        boolean add(long hash);
+
+        boolean contains(long hash);
+
+        /**
+         * @return `true` if `contains` never reports a hash that was not added.
+         */
+        boolean isExact();
+    }
+
+    /**
+     * An open-addressing hash set of longs, about 16 bytes per DN at the maximum load factor.
+     */
+    private static class LongHashSet implements DNSet {
+        private long[] table = new long[1 << 16];
+        private boolean hasZero = false;
+        private int size = 0;
+
+        public boolean add(long hash) {
+            if (hash == 0) {
+                boolean added = !hasZero;
+                hasZero = true;
+                return added;
+            }
+            if (size * 4L >= table.length * 3L) {
+                resize();
+            }
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == hash) return false;
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            size++;
+            return true;
+        }
+
+        public boolean contains(long hash) {
+            if (hash == 0) return hasZero;
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == hash) return true;
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        public boolean isExact() {
+            return true;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for (long hash : old) {
+                if (hash != 0) add(hash);
+            }
+        }
+    }
+
+    /**
+     * A Bloom filter sized for an expected number of DNs and a false positive rate.
+     */
+    private static class BloomFilter implements DNSet {
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(long expectedEntries, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64)];
+            bitCount = bits.length * 64L;
+            hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+        }
+
+        public boolean add(long hash) {
+            boolean added = false;
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * h2, bitCount);
+                long mask = 1L << (bit & 63);
+                if ((bits[(int) (bit >>> 6)] & mask) == 0) {
+                    bits[(int) (bit >>> 6)] |= mask;
+                    added = true;
+                }
+            }
+            return added;
+        }
+
+        public boolean contains(long hash) {
+            long h2 = (hash >>> 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * h2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0) return false;
+            }
+            return true;
+        }
+
+        public boolean isExact() {
+            return false;
+        }
+    }
+}
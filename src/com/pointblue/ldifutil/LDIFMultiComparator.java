@@ -0,0 +1,357 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The `LDIFMultiComparator` class compares a master LDIF file against any number of replica LDIF files in one run.
+ * For every DN that is missing from some input, or whose attributes differ from the master, it prints which inputs
+ * are affected. With `--matrix` it also prints how many entries differ per attribute and replica.
+ * <p>
+ * Inputs sorted by `LDIFSorter` can be compared with `--sorted`, which streams all inputs side by side (a merge join)
+ * in constant memory. Otherwise every input is read on its own thread into a shared hash table (a hash join) that
+ * holds, for every normalized DN, the key, the DN as written once, and a 64-bit hash of the record in each input, and
+ * with `--matrix` also a 64-bit hash per attribute. This is far less than the records themselves, but still grows with
+ * the number of entries and inputs, so large exports should be sorted and compared with `--sorted`.
+ * <p>
+ * If an input has the same DN more than once, only its last copy is compared, in both modes, and the number of
+ * copies skipped is printed with the summary.
+ */
+public class LDIFMultiComparator {
+
+    /**
+     * The main method to execute the comparison.
+     *
+     * @param args Command line arguments. Expects at least 2 files:
+     *             <master-file> <replica-file> [<replica-file> ...] [--sorted] [--matrix] [--attribute <attribute-to-compare>]
+     */
+    public static void main(String[] args) {
+        List<String> files = new ArrayList<>();
+        boolean sorted = false;
+        boolean matrix = false;
+        String attributeToCompare = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--sorted")) {
+                sorted = true;
+            } else if (args[i].equals("--matrix")) {
+                matrix = true;
+            } else if (args[i].equals("--attribute") && i + 1 < args.length) {
+                attributeToCompare = args[++i].toLowerCase();
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() < 2) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFMultiComparator <master-file> <replica-file> [<replica-file> ...] [--sorted] [--matrix] [--attribute <attribute-to-compare>]");
+            System.exit(1);
+        }
+
+        Comparison comparison = new Comparison(files, matrix, attributeToCompare);
+        try {
+            if (sorted) {
+                mergeJoin(comparison);
+            } else {
+                hashJoin(comparison);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while comparing the files: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.println("Entries compared: " + comparison.entries + ", differing: " + comparison.differing);
+        if (comparison.duplicates.get() > 0) {
+            System.out.println("Duplicate DNs skipped: " + comparison.duplicates.get() + " (the last copy in each input was compared)");
+        }
+        if (matrix) {
+            comparison.printMatrix();
+        }
+    }
+
+    /**
+     * Streams sorted inputs side by side, comparing all records that share the smallest hierarchy key. Copies of a DN
+     * in one input are next to each other, so all but the last are skipped.
+     */
+    private static void mergeJoin(Comparison comparison) throws IOException {
+        int n = comparison.files.size();
+        LDIFRecordSource[] sources = new LDIFRecordSource[n];
+        LDIFRecord[] heads = new LDIFRecord[n];
+        String[] keys = new String[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                sources[i] = LDIFRecordSource.open(comparison.files.get(i));
+                advance(comparison, sources, heads, keys, i);
+            }
+            while (true) {
+                String smallest = null;
+                for (String key : keys) {
+                    if (key != null && (smallest == null || key.compareTo(smallest) < 0)) {
+                        smallest = key;
+                    }
+                }
+                if (smallest == null) break;
+
+                Digest[] digests = new Digest[n];
+                String dn = null;
+                for (int i = 0; i < n; i++) {
+                    if (smallest.equals(keys[i])) {
+                        if (dn == null) dn = heads[i].getDN();
+                        digests[i] = comparison.digest(heads[i]);
+                        advance(comparison, sources, heads, keys, i);
+                        while (smallest.equals(keys[i])) {
+                            comparison.duplicates.incrementAndGet();
+                            digests[i] = comparison.digest(heads[i]);
+                            advance(comparison, sources, heads, keys, i);
+                        }
+                    }
+                }
+                comparison.compare(dn, digests);
+            }
+        } finally {
+            for (LDIFRecordSource source : sources) {
+                if (source != null) source.close();
+            }
+        }
+    }
+
+    private static void advance(Comparison comparison, LDIFRecordSource[] sources, LDIFRecord[] heads, String[] keys, int i) throws IOException {
+        String previous = keys[i];
+        heads[i] = sources[i].next();
+        keys[i] = heads[i] == null ? null : DNUtil.hierarchyKey(heads[i].getDN());
+        if (keys[i] != null && previous != null && keys[i].compareTo(previous) < 0) {
+            throw new IOException(comparison.files.get(i) + " is not sorted by LDIFSorter at DN " + heads[i].getDN()
+                    + "; run without --sorted");
+        }
+    }
+
+    /**
+     * Reads every input on its own thread into a shared table of normalized DN to per-input fingerprints. A later copy
+     * of a DN in the same input replaces the earlier one.
+     */
+    private static void hashJoin(Comparison comparison) throws IOException {
+        int n = comparison.files.size();
+        ConcurrentHashMap<String, Row> table = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                int input = i;
+                futures.add(executor.submit(() -> {
+                    try (LDIFRecordSource source = LDIFRecordSource.open(comparison.files.get(input))) {
+                        LDIFRecord record;
+                        while ((record = source.next()) != null) {
+                            Digest digest = comparison.digest(record);
+                            String dn = record.getDN();
+                            Row row = table.computeIfAbsent(DNUtil.normalize(dn), k -> new Row(dn, n));
+                            if (input == 0) {
+                                // Print the DN as the master writes it; only this thread writes it after creation
+                                row.dn = dn;
+                            }
+                            if (row.digests[input] != null) {
+                                comparison.duplicates.incrementAndGet();
+                            }
+                            row.digests[input] = digest;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Row row : table.values()) {
+            comparison.compare(row.dn, row.digests);
+        }
+    }
+
+    /**
+     * The entry of one DN in the hash join: the DN to print and the fingerprint from each input that has it.
+     */
+    private static class Row {
+        String dn;
+        final Digest[] digests;
+
+        Row(String dn, int inputs) {
+            this.dn = dn;
+            this.digests = new Digest[inputs];
+        }
+    }
+
+    /**
+     * The fingerprint of one record in one input.
+     */
+    private static class Digest {
+        final long hash;
+        /** The indexes of the attributes in `Comparison.attributeNames`, in ascending order, for `--matrix`. */
+        final int[] attributes;
+        /** The hash of each attribute in `attributes`. */
+        final long[] attributeHashes;
+
+        Digest(long hash, int[] attributes, long[] attributeHashes) {
+            this.hash = hash;
+            this.attributes = attributes;
+            this.attributeHashes = attributeHashes;
+        }
+    }
+
+    /**
+     * The state of one comparison: the inputs, options and the counts collected so far.
+     */
+    private static class Comparison {
+        final List<String> files;
+        final boolean matrix;
+        final String attributeToCompare;
+        final Map<String, long[]> divergence = new TreeMap<>();
+        /** The attribute names seen so far, so that digests can refer to attributes by index. */
+        private final ConcurrentHashMap<String, Integer> attributeIndexes = new ConcurrentHashMap<>();
+        private final List<String> attributeNames = new ArrayList<>();
+        long entries = 0;
+        long differing = 0;
+        final AtomicLong duplicates = new AtomicLong();
+
+        Comparison(List<String> files, boolean matrix, String attributeToCompare) {
+            this.files = files;
+            this.matrix = matrix;
+            this.attributeToCompare = attributeToCompare;
+        }
+
+        /**
+         * Computes the fingerprint of a record. Values are compared in order, as in `LDIFAttributeComparator`, but the
+         * order of the attributes themselves does not matter.
+         */
+        Digest digest(LDIFRecord record) {
+            Map<String, List<String>> attributes = record.toAttributeMap();
+            if (attributeToCompare != null) {
+                List<String> values = attributes.get(attributeToCompare);
+                attributes = values == null ? Collections.emptyMap() : Collections.singletonMap(attributeToCompare, values);
+            }
+            long hash = 0;
+            int[] indexes = matrix ? new int[attributes.size()] : null;
+            long[] attributeHashes = matrix ? new long[attributes.size()] : null;
+            int count = 0;
+            for (Map.Entry<String, List<String>> attribute : attributes.entrySet()) {
+                StringBuilder text = new StringBuilder(attribute.getKey());
+                for (String value : attribute.getValue()) {
+                    text.append('\u0000').append(value);
+                }
+                long attributeHash = DNUtil.hash64(text.toString());
+                hash += attributeHash;
+                if (matrix) {
+                    // Insertion sort by index; records have few attributes
+                    int index = attributeIndex(attribute.getKey());
+                    int i = count++;
+                    while (i > 0 && indexes[i - 1] > index) {
+                        indexes[i] = indexes[i - 1];
+                        attributeHashes[i] = attributeHashes[i - 1];
+                        i--;
+                    }
+                    indexes[i] = index;
+                    attributeHashes[i] = attributeHash;
+                }
+            }
+            return new Digest(hash, indexes, attributeHashes);
+        }
+
+        private int attributeIndex(String name) {
+            Integer index = attributeIndexes.get(name);
+            if (index != null) return index;
+            synchronized (attributeNames) {
+                return attributeIndexes.computeIfAbsent(name, k -> {
+                    attributeNames.add(k);
+                    return attributeNames.size() - 1;
+                });
+            }
+        }
+
+        /**
+         * Compares the fingerprints of one DN across all inputs and prints the inputs that miss it or disagree on it.
+         * Replicas are compared against the master, or against the first input that has the entry if the master does not.
+         */
+        void compare(String dn, Digest[] digests) {
+            entries++;
+            Digest reference = null;
+            List<String> missing = new ArrayList<>();
+            List<String> differ = new ArrayList<>();
+            for (int i = 0; i < digests.length; i++) {
+                if (digests[i] == null) {
+                    missing.add(files.get(i));
+                } else if (reference == null) {
+                    reference = digests[i];
+                } else if (digests[i].hash != reference.hash) {
+                    differ.add(files.get(i));
+                }
+            }
+            if (matrix && digests[0] != null) {
+                for (int i = 1; i < digests.length; i++) {
+                    if (digests[i] != null && digests[i].hash != digests[0].hash) {
+                        countDivergence(digests[0], digests[i], i);
+                    }
+                }
+            }
+            if (missing.isEmpty() && differ.isEmpty()) return;
+
+            differing++;
+            System.out.println(dn);
+            if (!missing.isEmpty()) {
+                System.out.println("  - Missing in: " + String.join(", ", missing));
+            }
+            if (!differ.isEmpty()) {
+                System.out.println("  - Differs in: " + String.join(", ", differ));
+            }
+        }
+
+        private void countDivergence(Digest master, Digest replica, int input) {
+            int i = 0;
+            int j = 0;
+            while (i < master.attributes.length || j < replica.attributes.length) {
+                int index;
+                if (j == replica.attributes.length || (i < master.attributes.length && master.attributes[i] < replica.attributes[j])) {
+                    index = master.attributes[i++];
+                } else if (i == master.attributes.length || replica.attributes[j] < master.attributes[i]) {
+                    index = replica.attributes[j++];
+                } else if (master.attributeHashes[i++] != replica.attributeHashes[j++]) {
+                    index = master.attributes[i - 1];
+                } else {
+                    continue;
+                }
+                String name;
+                synchronized (attributeNames) {
+                    name = attributeNames.get(index);
+                }
+                divergence.computeIfAbsent(name, k -> new long[files.size()])[input]++;
+            }
+        }
+
+        /**
+         * Prints the number of entries that differ from the master, per attribute and replica.
+         */
+        void printMatrix() {
+            System.out.println();
+            StringBuilder header = new StringBuilder("attribute");
+            for (int i = 1; i < files.size(); i++) {
+                header.append('\t').append(files.get(i));
+            }
+            System.out.println(header);
+            for (Map.Entry<String, long[]> row : divergence.entrySet()) {
+                StringBuilder line = new StringBuilder(row.getKey());
+                for (int i = 1; i < files.size(); i++) {
+                    line.append('\t').append(row.getValue()[i]);
+                }
+                System.out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+/**
+ * The `LDIFPipe` class is the base of the streaming library API: a pull-based sequence of items, such as LDIF records
+ * or diff events, that is read once. Items are only produced when they are asked for, so a slow consumer never makes
+ * the pipe read ahead. The pipe can be consumed directly with `next()`, or through an `Iterator`, a `Stream` or a
+ * `Flow.Publisher`.
+ *
+ * @param <T> The type of the items.
+ */
+public abstract class LDIFPipe<T> implements Closeable, Iterable<T> {
+
+    private final AtomicBoolean consumed = new AtomicBoolean();
+
+    /**
+     * Returns the next item.
+     *
+     * @return The next item, or `null` at the end.
+     * @throws IOException If the input cannot be read.
+     */
+    public abstract T next() throws IOException;
+
+    /**
+     * Returns an iterator over the remaining items. I/O errors are thrown as `UncheckedIOException`.
+     * The pipe is not closed at the end; use try-with-resources on the pipe.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        claim();
+        return new Iterator<T>() {
+            private T next;
+
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = LDIFPipe.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = next;
+                next = null;
+                return item;
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over the remaining items. Closing the stream closes the pipe.
+     * I/O errors are thrown as `UncheckedIOException`.
+     *
+     * @return The stream.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Returns a publisher of the remaining items. Items are read on the executor, only as far as the subscriber has
+     * requested them. The pipe is closed when the subscriber cancels, or after `onComplete` or `onError`. A pipe can
+     * only be read once, so a second subscriber gets `onError` with an `IllegalStateException`.
+     *
+     * @param executor Runs the reads and the calls to the subscriber. Reads may block, so this should not be a pool
+     *                 meant for short computations only.
+     * @return The publisher.
+     */
+    public Flow.Publisher<T> publisher(Executor executor) {
+        return subscriber -> {
+            Objects.requireNonNull(subscriber);
+            if (!consumed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    public void request(long n) {
+                    }
+
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("An LDIF pipe can only be read once"));
+                return;
+            }
+            PipeSubscription subscription = new PipeSubscription(subscriber, executor);
+            subscriber.onSubscribe(subscription);
+        };
+    }
+
+    private void claim() {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("An LDIF pipe can only be read once");
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Reading is over either way
+        }
+    }
+
+    /**
+     * Delivers items to one subscriber. `demand` holds the number of items requested but not yet delivered; a drain
+     * task is started when it goes up from zero and stops when it is back at zero, so at most one task runs at a time.
+     */
+    private class PipeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean done = false;
+        private volatile Throwable invalidRequest;
+
+        PipeSubscription(Flow.Subscriber<? super T> subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) return;
+            long count = n;
+            if (n <= 0) {
+                // Reported by the drain task, so signals to the subscriber stay serial
+                invalidRequest = new IllegalArgumentException("Requested " + n + " items");
+                count = 1;
+            }
+            long added = count;
+            long previous = demand.getAndUpdate(d -> d + added < 0 ? Long.MAX_VALUE : d + added);
+            if (previous == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            if (demand.getAndSet(Long.MAX_VALUE) == 0) {
+                // No drain task is running to close the pipe
+                closeQuietly();
+            }
+        }
+
+        private void drain() {
+            long requested = demand.get();
+            long emitted = 0;
+            while (true) {
+                if (done) {
+                    closeQuietly();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    fail(invalidRequest);
+                    return;
+                }
+                if (emitted == requested) {
+                    requested = demand.addAndGet(-emitted);
+                    emitted = 0;
+                    if (requested == 0) return;
+                }
+                T item;
+                try {
+                    item = next();
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                if (item == null) {
+                    done = true;
+                    closeQuietly();
+                    subscriber.onComplete();
+                    return;
+                }
+                subscriber.onNext(item);
+                emitted++;
+            }
+        }
+
+        private void fail(Throwable error) {
+            if (done) return;
+            done = true;
+            closeQuietly();
+            subscriber.onError(error);
+        }
+    }
+}
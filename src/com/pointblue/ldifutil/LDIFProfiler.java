@@ -0,0 +1,454 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The `LDIFProfiler` class computes attribute statistics for an LDIF file in a single pass: how many entries have each
+ * attribute, how many values it has, roughly how many of them are distinct, how large the values are and how many
+ * values an entry has.
+ * <p>
+ * The file is split into chunks that start at record boundaries (byte ranges for text LDIF, record ranges for the binary
+ * cache), and every worker thread profiles the chunks it takes into its own `Profile`. The profiles are merged at the
+ * end. Distinct values are counted with a HyperLogLog sketch and sizes with power-of-two histograms, so memory depends
+ * on the number of attributes and threads, not on the size of the file.
+ */
+public class LDIFProfiler {
+
+    /** Target size of a text chunk; several chunks per thread keep the threads busy until the end. */
+    private static final long CHUNK_BYTES = 32L << 20;
+    /** Number of records in a binary chunk. */
+    private static final long CHUNK_RECORDS = 10000;
+    private static final int DEFAULT_PRECISION = 14;
+
+    /**
+     * The main method to execute the profiling.
+     *
+     * @param args Command line arguments. Expects at least 1 argument:
+     *             <input-file> [--threads <n>] [--precision <bits>] [--histograms]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFProfiler <input-file> [--threads <n>] [--precision <bits>] [--histograms]");
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        int precision = DEFAULT_PRECISION;
+        boolean histograms = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--precision":
+                    precision = Integer.parseInt(args[++i]);
+                    break;
+                case "--histograms":
+                    histograms = true;
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (threads < 1 || precision < 4 || precision > 18) {
+            System.out.println("--threads must be at least 1 and --precision between 4 and 18");
+            System.exit(1);
+        }
+
+        try {
+            Profile profile;
+            if (LDIFBinaryReader.isBinaryLDIF(inputFile)) {
+                try (LDIFBinaryReader reader = new LDIFBinaryReader(inputFile)) {
+                    List<Chunk> chunks = new ArrayList<>();
+                    for (long i = 0; i < reader.getRecordCount(); i += CHUNK_RECORDS) {
+                        long from = i;
+                        long to = Math.min(reader.getRecordCount(), from + CHUNK_RECORDS);
+                        chunks.add(() -> reader.cursor(from, to));
+                    }
+                    profile = profileChunks(chunks, threads, precision);
+                }
+            } else {
+                profile = profileChunks(textChunks(inputFile, threads), threads, precision);
+            }
+            printProfile(profile, histograms);
+        } catch (IOException e) {
+            System.err.println("An error occurred while profiling the file: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Splits a text LDIF file into byte ranges of about `CHUNK_BYTES`. Every range starts at a record boundary.
+     */
+    private static List<Chunk> textChunks(String inputFile, int threads) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long count = Math.max(1, Math.min((size + CHUNK_BYTES - 1) / CHUNK_BYTES, Integer.MAX_VALUE));
+            if (count < threads && size >= threads * (1L << 20)) {
+                count = threads;
+            }
+            starts.add(0L);
+            for (long i = 1; i < count; i++) {
+                long start = nextRecordStart(channel, size * i / count);
+                if (start > starts.get(starts.size() - 1) && start < size) {
+                    starts.add(start);
+                }
+            }
+            starts.add(size);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            long start = starts.get(i);
+            long end = starts.get(i + 1);
+            chunks.add(() -> {
+                LDIFReader reader = LDIFReader.open(inputFile, start, false);
+                return new LDIFRecordSource() {
+                    public LDIFRecord next() throws IOException {
+                        LDIFRecord record = reader.next();
+                        return record != null && record.getOffset() < end ? record : null;
+                    }
+
+                    public void close() throws IOException {
+                        reader.close();
+                    }
+                };
+            });
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the first record at or after a byte position: a line starting with `dn:` that follows an empty line.
+     * Continuation lines start with a space, so they never match.
+     *
+     * @return The offset of the record, or the file size if there is none.
+     */
+    private static long nextRecordStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        // A record starts at a line that begins with "dn:" right after an empty line
+        boolean atLineStart = false;
+        boolean previousLineEmpty = false;
+        int lineLength = 0;
+        byte[] prefix = new byte[3];
+        long offset = position - 1;
+        long lineStart = -1;
+        if (offset < 0) {
+            return 0;
+        }
+        while (true) {
+            buffer.clear();
+            int count = channel.read(buffer, offset);
+            if (count <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < count; i++, offset++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    previousLineEmpty = atLineStart && lineLength == 0;
+                    atLineStart = true;
+                    lineLength = 0;
+                    lineStart = offset + 1;
+                } else if (atLineStart && b != '\r') {
+                    if (lineLength < prefix.length) {
+                        prefix[lineLength] = b;
+                    }
+                    lineLength++;
+                    if (lineLength == prefix.length && previousLineEmpty
+                            && (prefix[0] | 0x20) == 'd' && (prefix[1] | 0x20) == 'n' && prefix[2] == ':') {
+                        return lineStart;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Profiles the chunks on a pool of threads. Each thread keeps its own profile; they are merged when all chunks are
+     * done.
+     */
+    private static Profile profileChunks(List<Chunk> chunks, int threads, int precision) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger nextChunk = new AtomicInteger();
+        try {
+            List<Future<Profile>> futures = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, chunks.size()); i++) {
+                futures.add(executor.submit(() -> {
+                    Profile profile = new Profile(precision);
+                    int index;
+                    while ((index = nextChunk.getAndIncrement()) < chunks.size()) {
+                        try (LDIFRecordSource source = chunks.get(index).open()) {
+                            LDIFRecord record;
+                            while ((record = source.next()) != null) {
+                                profile.add(record);
+                            }
+                        }
+                    }
+                    return profile;
+                }));
+            }
+            Profile total = new Profile(precision);
+            for (Future<Profile> future : futures) {
+                total.merge(future.get());
+            }
+            return total;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the entry summary and one row per attribute, most common attributes first.
+     */
+    private static void printProfile(Profile profile, boolean histograms) {
+        System.out.println("Entries: " + profile.entries);
+        System.out.println("Values per entry: avg " + format(profile.valuesPerEntry.average())
+                + ", p50 <= " + profile.valuesPerEntry.percentile(0.5)
+                + ", p99 <= " + profile.valuesPerEntry.percentile(0.99)
+                + ", max " + profile.valuesPerEntry.max);
+        System.out.println();
+
+        List<Map.Entry<String, AttributeStats>> attributes = new ArrayList<>(profile.attributes.entrySet());
+        attributes.sort(Comparator.comparing((Map.Entry<String, AttributeStats> e) -> -e.getValue().entries)
+                .thenComparing(Map.Entry::getKey));
+        int width = "attribute".length();
+        for (Map.Entry<String, AttributeStats> entry : attributes) {
+            width = Math.max(width, entry.getKey().length());
+        }
+
+        String row = "%-" + width + "s %12s %8s %12s %12s %8s %8s %10s %10s %10s%n";
+        System.out.printf(row, "attribute", "entries", "coverage", "values", "~distinct", "avg/entry", "max/entry",
+                "avg size", "p99 size", "max size");
+        for (Map.Entry<String, AttributeStats> entry : attributes) {
+            AttributeStats stats = entry.getValue();
+            System.out.printf(row, entry.getKey(), stats.entries,
+                    format(100.0 * stats.entries / Math.max(1, profile.entries)) + "%",
+                    stats.sizes.count, Math.min(stats.sizes.count, stats.distinct.estimate()),
+                    format(stats.fanOut.average()), stats.fanOut.max,
+                    format(stats.sizes.average()), "<= " + stats.sizes.percentile(0.99), stats.sizes.max);
+        }
+
+        if (histograms) {
+            for (Map.Entry<String, AttributeStats> entry : attributes) {
+                System.out.println();
+                System.out.println(entry.getKey() + " value sizes:");
+                entry.getValue().sizes.print();
+                System.out.println(entry.getKey() + " values per entry:");
+                entry.getValue().fanOut.print();
+            }
+        }
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+
+    /**
+     * Opens one chunk of the input.
+     */
+    private interface Chunk {
+        LDIFRecordSource open() throws IOException;
+    }
+
+    /**
+     * The statistics of all the records one thread has seen.
+     */
+    private static class Profile {
+        private final int precision;
+        final Map<String, AttributeStats> attributes = new HashMap<>();
+        final Histogram valuesPerEntry = new Histogram();
+        /** The stats by attribute name as written in the file, so names are only lower-cased once. */
+        private final Map<String, AttributeStats> byName = new HashMap<>();
+        /** The attributes of the current entry. */
+        private final List<AttributeStats> touched = new ArrayList<>();
+        long entries = 0;
+
+        Profile(int precision) {
+            this.precision = precision;
+        }
+
+        void add(LDIFRecord record) {
+            entries++;
+            valuesPerEntry.add(record.size());
+            touched.clear();
+            for (int i = 0; i < record.size(); i++) {
+                String name = record.getName(i);
+                AttributeStats stats = byName.get(name);
+                if (stats == null) {
+                    stats = attributes.computeIfAbsent(name.toLowerCase(), n -> new AttributeStats(precision));
+                    byName.put(name, stats);
+                }
+                if (stats.lastEntry != entries) {
+                    stats.lastEntry = entries;
+                    stats.entryValues = 0;
+                    touched.add(stats);
+                }
+                stats.entryValues++;
+                byte[] value = record.getValue(i);
+                stats.sizes.add(value.length);
+                stats.distinct.add(DNUtil.hash64(value));
+            }
+            for (AttributeStats stats : touched) {
+                stats.entries++;
+                stats.fanOut.add(stats.entryValues);
+            }
+        }
+
+        void merge(Profile other) {
+            entries += other.entries;
+            valuesPerEntry.merge(other.valuesPerEntry);
+            for (Map.Entry<String, AttributeStats> entry : other.attributes.entrySet()) {
+                AttributeStats stats = attributes.get(entry.getKey());
+                if (stats == null) {
+                    attributes.put(entry.getKey(), entry.getValue());
+                } else {
+                    stats.merge(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The statistics of one attribute.
+     */
+    private static class AttributeStats {
+        final HyperLogLog distinct;
+        final Histogram sizes = new Histogram();
+        final Histogram fanOut = new Histogram();
+        long entries = 0;
+        /** The entry the values are being counted for, and how many it has so far. */
+        private long lastEntry = 0;
+        private int entryValues = 0;
+
+        AttributeStats(int precision) {
+            distinct = new HyperLogLog(precision);
+        }
+
+        void merge(AttributeStats other) {
+            entries += other.entries;
+            distinct.merge(other.distinct);
+            sizes.merge(other.sizes);
+            fanOut.merge(other.fanOut);
+        }
+    }
+
+    /**
+     * A HyperLogLog sketch with 2^precision one-byte registers. The standard error is about 1.04 / sqrt(2^precision),
+     * 0.8% at the default precision of 14.
+     */
+    private static class HyperLogLog {
+        private final int precision;
+        private final byte[] registers;
+
+        HyperLogLog(int precision) {
+            this.precision = precision;
+            this.registers = new byte[1 << precision];
+        }
+
+        void add(long hash) {
+            int index = (int) (hash >>> (64 - precision));
+            // The sentinel bit caps the rank when the remaining bits are all zero
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        }
+
+        void merge(HyperLogLog other) {
+            for (int i = 0; i < registers.length; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        }
+
+        long estimate() {
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) zeros++;
+            }
+            double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+            if (estimate <= 2.5 * m && zeros > 0) {
+                // Linear counting is more accurate for small sets
+                estimate = m * Math.log((double) m / zeros);
+            }
+            return Math.round(estimate);
+        }
+    }
+
+    /**
+     * A histogram with power-of-two buckets: bucket 0 counts zeros and bucket k counts values from 2^(k-1) to 2^k - 1.
+     * Percentiles are reported as the upper bound of their bucket.
+     */
+    private static class Histogram {
+        final long[] buckets = new long[64];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+
+        void add(long value) {
+            buckets[64 - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        double average() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return max;
+        }
+
+        void print() {
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > 0) {
+                    long lower = i == 0 ? 0 : 1L << (i - 1);
+                    System.out.printf("  %10d - %-10d %12d%n", lower, upperBound(i), buckets[i]);
+                }
+            }
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : bucket == 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * The `LDIFQueryServer` class keeps LDIF snapshots loaded in memory and answers extract, compare and lookup queries,
+ * so repeated queries do not pay for JVM startup and a full re-parse each time.
+ * <p>
+ * Each snapshot is held in a compact form: every record is encoded with the binary LDIF cache encoding and stored
+ * under its DN hierarchy key. Queries are read one per line from a local socket or from standard input; every
+ * connection has its own thread, and each query is run on a fixed worker pool. Each response is followed by a line
+ * holding a single `.`; response lines that start with `.` get an extra `.` in front. Snapshot files are polled for
+ * changes: records appended to a text file are loaded incrementally, and any other change reloads the snapshot in the
+ * background and swaps it in when it is complete.
+ * <pre>
+ *   LIST                                  list the loaded snapshots
+ *   LOAD &lt;name&gt; &lt;file&gt;                    load or replace a snapshot
+ *   DROP &lt;name&gt;                           unload a snapshot
+ *   EXTRACT &lt;name&gt; &lt;attribute&gt;             values of an attribute, as LDIFAttributeExtractor prints them
+ *   COMPARE &lt;name1&gt; &lt;name2&gt; [&lt;attribute&gt;]  DNs that differ, as LDIFAttributeComparator prints them
+ *   LOOKUP &lt;name&gt; &lt;dn&gt;                     one record as LDIF
+ *   QUIT                                  close the connection
+ *   SHUTDOWN                              stop the server
+ * </pre>
+ */
+public class LDIFQueryServer {
+
+    /** Number of bytes at the end of a loaded text file that must be unchanged for an incremental reload. */
+    private static final int TAIL_CHECK_BYTES = 4096;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    /** Reads queries from connections. Idle connections only hold a thread here, never a worker. */
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private volatile ServerSocket serverSocket;
+
+    public LDIFQueryServer(int threads) {
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * The main method to start the server.
+     *
+     * @param args Command line arguments. Expects at least 1 snapshot:
+     *             <name>=<file> [<name>=<file> ...] [--port <port>] [--stdin] [--threads <n>] [--poll <seconds>]
+     */
+    public static void main(String[] args) {
+        Map<String, String> files = new LinkedHashMap<>();
+        int port = 7389;
+        boolean stdin = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int pollSeconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--stdin")) {
+                stdin = true;
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--poll") && i + 1 < args.length) {
+                pollSeconds = Integer.parseInt(args[++i]);
+            } else if (args[i].indexOf('=') > 0) {
+                files.put(args[i].substring(0, args[i].indexOf('=')), args[i].substring(args[i].indexOf('=') + 1));
+            } else {
+                files.clear();
+                break;
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFQueryServer <name>=<file> [<name>=<file> ...] [--port <port>] [--stdin] [--threads <n>] [--poll <seconds>]");
+            System.exit(1);
+        }
+
+        LDIFQueryServer server = new LDIFQueryServer(threads);
+        try {
+            server.loadAll(files);
+        } catch (IOException e) {
+            System.err.println("An error occurred while loading the snapshots: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(server::refreshAll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+
+        try {
+            if (stdin) {
+                server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            } else {
+                server.listen(port);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while serving queries: " + e.getMessage());
+            e.printStackTrace();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Loads snapshots in parallel on the worker pool.
+     *
+     * @param files Snapshot names mapped to file names.
+     * @throws IOException If a snapshot cannot be loaded.
+     */
+    public void loadAll(Map<String, String> files) throws IOException {
+        List<Future<Snapshot>> futures = new ArrayList<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            futures.add(workers.submit(() -> Snapshot.load(file.getKey(), file.getValue())));
+        }
+        try {
+            for (Future<Snapshot> future : futures) {
+                Snapshot snapshot = future.get();
+                snapshots.put(snapshot.name, snapshot);
+                System.err.println("Loaded " + snapshot.name + ": " + snapshot.records.size() + " records");
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Accepts connections on the loopback interface and serves each on its own thread until `SHUTDOWN`.
+     *
+     * @param port The port to listen on.
+     * @throws IOException If the socket cannot be opened.
+     */
+    public void listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                // Closed by SHUTDOWN
+                break;
+            }
+            connections.submit(() -> {
+                try (Socket client = socket;
+                     BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                     PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)))) {
+                    serve(in, out);
+                } catch (IOException e) {
+                    System.err.println("Connection error: " + e.getMessage());
+                }
+            });
+        }
+        connections.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * Answers queries read from a stream until `QUIT`, `SHUTDOWN` or the end of the stream.
+     *
+     * @param in The query stream.
+     * @param out The response stream.
+     * @throws IOException If the streams fail.
+     */
+    public void serve(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String command = line.split("\\s+", 2)[0].toUpperCase();
+            if (command.equals("QUIT")) {
+                break;
+            }
+            if (command.equals("SHUTDOWN")) {
+                out.println(".");
+                out.flush();
+                shutdown();
+                break;
+            }
+            run(line, out);
+            out.println(".");
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs one query on the worker pool and waits for it. The worker writes the response straight to the connection,
+     * which is not used by anything else meanwhile.
+     */
+    private void run(String line, PrintWriter out) throws IOException {
+        Future<?> response = workers.submit(() -> {
+            try {
+                execute(line, out);
+            } catch (IOException | RuntimeException e) {
+                out.println("ERROR " + e.getMessage());
+            }
+        });
+        try {
+            response.get();
+        } catch (ExecutionException e) {
+            out.println("ERROR " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void shutdown() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * Executes one query and writes its response, without the terminating `.` line.
+     */
+    private void execute(String line, PrintWriter out) throws IOException {
+        String[] words = line.split("\\s+");
+        String command = words[0].toUpperCase();
+        switch (command) {
+            case "LIST":
+                for (Snapshot snapshot : snapshots.values()) {
+                    respond(out, snapshot.name + " " + snapshot.fileName + " " + snapshot.records.size());
+                }
+                break;
+            case "LOAD":
+                expect(words, 3, "LOAD <name> <file>");
+                Snapshot loaded = Snapshot.load(words[1], line.split("\\s+", 3)[2]);
+                snapshots.put(loaded.name, loaded);
+                respond(out, "Loaded " + loaded.name + ": " + loaded.records.size() + " records");
+                break;
+            case "DROP":
+                expect(words, 2, "DROP <name>");
+                if (snapshots.remove(words[1]) == null) {
+                    throw new IllegalArgumentException("No snapshot named " + words[1]);
+                }
+                break;
+            case "EXTRACT":
+                expect(words, 3, "EXTRACT <name> <attribute>");
+                extract(snapshot(words[1]), words[2].toLowerCase(), out);
+                break;
+            case "COMPARE":
+                expect(words, 3, "COMPARE <name1> <name2> [<attribute>]");
+                compare(snapshot(words[1]), snapshot(words[2]), words.length > 3 ? words[3].toLowerCase() : null, out);
+                break;
+            case "LOOKUP":
+                expect(words, 3, "LOOKUP <name> <dn>");
+                LDIFRecord record = snapshot(words[1]).get(line.split("\\s+", 3)[2]);
+                if (record != null) {
+                    for (String ldifLine : record.toLDIF().split(System.lineSeparator())) {
+                        respond(out, ldifLine);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command " + words[0]);
+        }
+    }
+
+    private static void expect(String[] words, int count, String usage) {
+        if (words.length < count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    private Snapshot snapshot(String name) {
+        Snapshot snapshot = snapshots.get(name);
+        if (snapshot == null) {
+            throw new IllegalArgumentException("No snapshot named " + name);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes a response line, doubling a leading `.` so it cannot be mistaken for the end of the response.
+     */
+    private static void respond(PrintWriter out, String line) {
+        out.println(line.startsWith(".") ? "." + line : line);
+    }
+
+    private static void extract(Snapshot snapshot, String attribute, PrintWriter out) throws IOException {
+        for (byte[] encoded : snapshot.records.values()) {
+            LDIFRecord record = snapshot.decode(encoded);
+            List<String> values = record.getValues(attribute);
+            if (!values.isEmpty()) {
+                respond(out, record.getDNLine() + ":");
+                for (String value : values) {
+                    respond(out, "  - " + value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares two snapshots. Both are sorted by hierarchy key, so they are walked side by side.
+     */
+    private static void compare(Snapshot snapshot1, Snapshot snapshot2, String attribute, PrintWriter out) throws IOException {
+        Iterator<Map.Entry<String, byte[]>> it1 = snapshot1.records.entrySet().iterator();
+        Iterator<Map.Entry<String, byte[]>> it2 = snapshot2.records.entrySet().iterator();
+        Map.Entry<String, byte[]> e1 = it1.hasNext() ? it1.next() : null;
+        Map.Entry<String, byte[]> e2 = it2.hasNext() ? it2.next() : null;
+        while (e1 != null || e2 != null) {
+            int order = e1 == null ? 1 : e2 == null ? -1 : e1.getKey().compareTo(e2.getKey());
+            LDIFRecord record1 = order <= 0 ? snapshot1.decode(e1.getValue()) : null;
+            LDIFRecord record2 = order >= 0 ? snapshot2.decode(e2.getValue()) : null;
+            boolean equal;
+            if (record1 == null || record2 == null) {
+                equal = false;
+            } else if (attribute == null) {
+                equal = record1.toAttributeMap().equals(record2.toAttributeMap());
+            } else {
+                List<String> values1 = record1.toAttributeMap().get(attribute);
+                equal = values1 != null && values1.equals(record2.toAttributeMap().get(attribute));
+            }
+            if (!equal) {
+                respond(out, (record1 != null ? record1 : record2).getLDIFDN());
+            }
+            if (order <= 0) e1 = it1.hasNext() ? it1.next() : null;
+            if (order >= 0) e2 = it2.hasNext() ? it2.next() : null;
+        }
+    }
+
+    /**
+     * Checks every snapshot file for changes and reloads the ones that changed.
+     */
+    private void refreshAll() {
+        for (Snapshot snapshot : snapshots.values()) {
+            try {
+                File file = new File(snapshot.fileName);
+                if (file.lastModified() == snapshot.lastModified && file.length() == snapshot.length) {
+                    continue;
+                }
+                if (snapshot.canAppend()) {
+                    int added = snapshot.loadAppended();
+                    System.err.println("Reloaded " + snapshot.name + ": " + added + " appended records");
+                } else {
+                    Snapshot reloaded = Snapshot.load(snapshot.name, snapshot.fileName);
+                    snapshots.replace(snapshot.name, snapshot, reloaded);
+                    System.err.println("Reloaded " + snapshot.name + ": " + reloaded.records.size() + " records");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reloading " + snapshot.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One loaded LDIF file. Records are stored encoded, keyed by DN hierarchy key, with a shared attribute name table.
+     */
+    private static class Snapshot {
+        final String name;
+        final String fileName;
+        final ConcurrentSkipListMap<String, byte[]> records = new ConcurrentSkipListMap<>();
+        private final List<String> names = new CopyOnWriteArrayList<>();
+        private final Map<String, Integer> nameIndex = new ConcurrentHashMap<>();
+        boolean binary;
+        long lastModified;
+        long length;
+        // Where the text file was read up to, and a checksum of the bytes just before it
+        long endOffset;
+        long tailChecksum;
+        // Whether the last record read had no blank line after it yet
+        boolean lastRecordOpen = false;
+
+        Snapshot(String name, String fileName) {
+            this.name = name;
+            this.fileName = fileName;
+        }
+
+        static Snapshot load(String name, String fileName) throws IOException {
+            Snapshot snapshot = new Snapshot(name, fileName);
+            File file = new File(fileName);
+            snapshot.lastModified = file.lastModified();
+            snapshot.length = file.length();
+            snapshot.binary = LDIFBinaryReader.isBinaryLDIF(fileName);
+            if (snapshot.binary) {
+                try (LDIFRecordSource source = LDIFRecordSource.open(fileName)) {
+                    LDIFRecord record;
+                    while ((record = source.next()) != null) {
+                        snapshot.add(record);
+                    }
+                }
+            } else {
+                snapshot.readFrom(0);
+            }
+            return snapshot;
+        }
+
+        /**
+         * @return `true` if the file is a text file that only grew since it was read.
+         */
+        boolean canAppend() throws IOException {
+            return !binary && new File(fileName).length() > endOffset && checksumBefore(endOffset) == tailChecksum;
+        }
+
+        synchronized int loadAppended() throws IOException {
+            File file = new File(fileName);
+            lastModified = file.lastModified();
+            length = file.length();
+            return readFrom(endOffset);
+        }
+
+        /**
+         * Reads records from a byte offset to the end of the file. If the last record is not followed by a blank line,
+         * more of its lines may still be appended, so `endOffset` is left at its start and it is read again next time.
+         *
+         * @return The number of new records.
+         */
+        private int readFrom(long offset) throws IOException {
+            // The open record from the last read is read again; it replaces the partial copy and is not new
+            int count = lastRecordOpen ? -1 : 0;
+            long lastRecordStart = -1;
+            long lastRecordEnd = -1;
+            try (LDIFReader reader = LDIFReader.open(fileName, offset, false)) {
+                LDIFRecord record;
+                while ((record = reader.next()) != null) {
+                    add(record);
+                    count++;
+                    lastRecordStart = record.getOffset();
+                    lastRecordEnd = reader.getPosition();
+                }
+                endOffset = reader.getPosition();
+            }
+            lastRecordOpen = lastRecordStart >= 0 && !followedByBlankLine(lastRecordEnd);
+            if (lastRecordOpen) {
+                endOffset = lastRecordStart;
+            }
+            tailChecksum = checksumBefore(endOffset);
+            return Math.max(0, count);
+        }
+
+        private boolean followedByBlankLine(long offset) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+                file.seek(offset);
+                int b = file.read();
+                if (b == '\r') {
+                    b = file.read();
+                }
+                return b == '\n';
+            }
+        }
+
+        private long checksumBefore(long offset) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+                byte[] tail = new byte[(int) Math.min(TAIL_CHECK_BYTES, offset)];
+                file.seek(offset - tail.length);
+                file.readFully(tail);
+                CRC32 crc = new CRC32();
+                crc.update(tail);
+                return crc.getValue();
+            }
+        }
+
+        void add(LDIFRecord record) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            LDIFBinaryWriter.writeBody(new DataOutputStream(bytes), record, this::indexOf);
+            records.put(DNUtil.hierarchyKey(record.getDN()), bytes.toByteArray());
+        }
+
+        LDIFRecord get(String dn) throws IOException {
+            byte[] encoded = records.get(DNUtil.hierarchyKey(dn));
+            return encoded == null ? null : decode(encoded);
+        }
+
+        LDIFRecord decode(byte[] encoded) throws IOException {
+            return LDIFBinaryReader.readBody(new DataInputStream(new ByteArrayInputStream(encoded)), names::get);
+        }
+
+        private synchronized int indexOf(String attribute) {
+            Integer index = nameIndex.get(attribute);
+            if (index == null) {
+                index = names.size();
+                names.add(attribute);
+                nameIndex.put(attribute, index);
+            }
+            return index;
+        }
+    }
+}
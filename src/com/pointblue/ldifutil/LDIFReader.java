@@ -0,0 +1,289 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The `LDIFReader` class is a streaming parser for text LDIF files.
+ * It returns one `LDIFRecord` at a time, unfolding continuation lines, skipping comments and decoding base64 values,
+ * and tracks the byte offset of every record so callers can checkpoint, seek and split files.
+ */
+public class LDIFReader implements LDIFRecordSource {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final boolean keepRawText;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferLen = 0;
+    private long streamPosition;
+
+    // The current physical line, including its line terminator.
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private int contentLength = 0;
+    private long lineOffset = 0;
+    private boolean hasLine = false;
+    private long consumedPosition;
+
+    private byte[] logical = new byte[256];
+    private int logicalLength = 0;
+    private ByteArrayOutputStream raw;
+
+    /**
+     * Opens a text LDIF file.
+     *
+     * @param fileName The name of the LDIF file to read.
+     * @throws IOException If the file cannot be opened.
+     */
+    public LDIFReader(String fileName) throws IOException {
+        this(new FileInputStream(fileName), 0, false);
+    }
+
+    /**
+     * Reads LDIF from a stream.
+     *
+     * @param in The stream to read, positioned at `startOffset`.
+     * @param startOffset The byte offset of the stream in its file, used for record offsets.
+     * @param keepRawText Whether to keep the exact source bytes of each record.
+     */
+    public LDIFReader(InputStream in, long startOffset, boolean keepRawText) {
+        this.in = in;
+        this.keepRawText = keepRawText;
+        this.streamPosition = startOffset;
+        this.consumedPosition = startOffset;
+    }
+
+    /**
+     * Opens a text LDIF file at a byte offset. The offset must be the start of a line, normally a record offset.
+     *
+     * @param fileName The name of the LDIF file to read.
+     * @param offset The byte offset to start reading at.
+     * @param keepRawText Whether to keep the exact source bytes of each record.
+     * @return A reader positioned at the offset.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static LDIFReader open(String fileName, long offset, boolean keepRawText) throws IOException {
+        FileInputStream stream = new FileInputStream(fileName);
+        stream.getChannel().position(offset);
+        return new LDIFReader(stream, offset, keepRawText);
+    }
+
+    /**
+     * @return The byte offset just past the last line consumed by `next()`.
+     */
+    public long getPosition() {
+        return consumedPosition;
+    }
+
+    @Override
+    public LDIFRecord next() throws IOException {
+        return read(true);
+    }
+
+    /**
+     * Reads the DN of the next record. The attribute lines are skipped without unfolding or decoding them.
+     */
+    @Override
+    public String nextDN() throws IOException {
+        LDIFRecord record = read(false);
+        return record == null ? null : record.getDN();
+    }
+
+    /**
+     * Reads the next record, with its attributes or with its DN only.
+     */
+    private LDIFRecord read(boolean withAttributes) throws IOException {
+        while (true) {
+            // Skip blank lines and comments between records
+            while (peekLine() && (contentLength == 0 || line[0] == '#')) {
+                if (contentLength == 0) {
+                    consumeLine();
+                } else {
+                    readLogicalLine();
+                }
+            }
+            if (!hasLine) {
+                return null;
+            }
+
+            long recordOffset = lineOffset;
+            raw = keepRawText && withAttributes ? new ByteArrayOutputStream() : null;
+            LDIFRecord record = null;
+            while (peekLine() && contentLength > 0) {
+                boolean comment = line[0] == '#';
+                readLogicalLine();
+                if (comment) continue;
+
+                if (record == null) {
+                    if (startsWithIgnoreCase("dn:")) {
+                        record = new LDIFRecord(decodeString(3));
+                        record.setOffset(recordOffset);
+                        if (!withAttributes) {
+                            skipBlock();
+                            break;
+                        }
+                    } else if (startsWithIgnoreCase("version:")) {
+                        // The version line is not part of the record that follows it
+                        recordOffset = consumedPosition;
+                        if (raw != null) raw.reset();
+                    } else {
+                        // Not a record we understand; ignore the rest of the block
+                        skipBlock();
+                        break;
+                    }
+                } else {
+                    parseAttribute(record);
+                }
+            }
+            if (record != null) {
+                if (raw != null) {
+                    record.setRawText(raw.toByteArray());
+                }
+                raw = null;
+                return record;
+            }
+            raw = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Parses the current logical line as an attribute and adds it to the record. Malformed lines are ignored.
+     */
+    private void parseAttribute(LDIFRecord record) throws IOException {
+        int colon = indexOf((byte) ':', 0);
+        if (colon <= 0) return;
+        String name = new String(logical, 0, colon, StandardCharsets.US_ASCII).trim();
+        int start = colon + 1;
+        if (start < logicalLength && logical[start] == ':') {
+            record.add(name, decodeBase64(start + 1), LDIFRecord.TYPE_BASE64);
+        } else if (start < logicalLength && logical[start] == '<') {
+            record.add(name, trimmed(start + 1), LDIFRecord.TYPE_URL);
+        } else {
+            record.add(name, trimmed(start), LDIFRecord.TYPE_TEXT);
+        }
+    }
+
+    /**
+     * Decodes the value of a `dn:` or `dn::` line starting at the given index.
+     */
+    private String decodeString(int start) throws IOException {
+        if (start < logicalLength && logical[start] == ':') {
+            return new String(decodeBase64(start + 1), StandardCharsets.UTF_8);
+        }
+        return new String(trimmed(start), StandardCharsets.UTF_8);
+    }
+
+    private byte[] decodeBase64(int start) throws IOException {
+        StringBuilder encoded = new StringBuilder(logicalLength - start);
+        for (int i = start; i < logicalLength; i++) {
+            if (!Character.isWhitespace(logical[i])) {
+                encoded.append((char) logical[i]);
+            }
+        }
+        try {
+            return Base64.getDecoder().decode(encoded.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid base64 value at offset " + lineOffset + ": " + e.getMessage());
+        }
+    }
+
+    private byte[] trimmed(int start) {
+        int end = logicalLength;
+        while (start < end && logical[start] == ' ') start++;
+        while (end > start && logical[end - 1] == ' ') end--;
+        return Arrays.copyOfRange(logical, start, end);
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < logicalLength; i++) {
+            if (logical[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWithIgnoreCase(String prefix) {
+        if (logicalLength < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) logical[i]) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Consumes the current physical line and its continuation lines into the logical line buffer.
+     */
+    private void readLogicalLine() throws IOException {
+        logicalLength = 0;
+        appendLogical(0);
+        consumeLine();
+        while (peekLine() && contentLength > 0 && line[0] == ' ') {
+            appendLogical(1);
+            consumeLine();
+        }
+    }
+
+    private void skipBlock() throws IOException {
+        while (peekLine() && contentLength > 0) {
+            consumeLine();
+        }
+    }
+
+    private void appendLogical(int from) {
+        int length = contentLength - from;
+        if (logicalLength + length > logical.length) {
+            logical = Arrays.copyOf(logical, Math.max(logical.length * 2, logicalLength + length));
+        }
+        System.arraycopy(line, from, logical, logicalLength, length);
+        logicalLength += length;
+    }
+
+    private void consumeLine() {
+        if (raw != null) {
+            raw.write(line, 0, lineLength);
+        }
+        consumedPosition = lineOffset + lineLength;
+        hasLine = false;
+    }
+
+    /**
+     * Makes the next physical line current if it is not already.
+     *
+     * @return `false` at the end of the input.
+     */
+    private boolean peekLine() throws IOException {
+        if (hasLine) return true;
+        lineOffset = streamPosition;
+        lineLength = 0;
+        while (true) {
+            if (bufferPos == bufferLen) {
+                bufferLen = in.read(buffer);
+                bufferPos = 0;
+                if (bufferLen <= 0) {
+                    bufferLen = 0;
+                    break;
+                }
+            }
+            byte b = buffer[bufferPos++];
+            streamPosition++;
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+            if (b == '\n') break;
+        }
+        if (lineLength == 0) return false;
+        contentLength = lineLength;
+        if (contentLength > 0 && line[contentLength - 1] == '\n') contentLength--;
+        if (contentLength > 0 && line[contentLength - 1] == '\r') contentLength--;
+        hasLine = true;
+        return true;
+    }
+}
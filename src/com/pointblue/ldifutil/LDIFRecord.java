@@ -0,0 +1,230 @@
+package com.pointblue.ldifutil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The `LDIFRecord` class holds a single parsed LDIF record: its DN and its attribute values in file order.
+ * Values are kept decoded, so a base64 (`::`) value is stored as its raw bytes and re-encoded only when it is printed.
+ */
+public class LDIFRecord {
+
+    /** Value type for a plain `attr: value` line. */
+    public static final int TYPE_TEXT = 0;
+    /** Value type for a base64 `attr:: value` line. */
+    public static final int TYPE_BASE64 = 1;
+    /** Value type for a URL `attr:< value` line. */
+    public static final int TYPE_URL = 2;
+
+    private final String dn;
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private long offset = -1;
+    private byte[] rawText;
+
+    /**
+     * Creates an empty record.
+     *
+     * @param dn The decoded distinguished name (DN) of the record.
+     */
+    public LDIFRecord(String dn) {
+        this.dn = dn;
+    }
+
+    /**
+     * Adds an attribute value to the record.
+     *
+     * @param name The attribute name as it appears in the file.
+     * @param value The decoded attribute value.
+     * @param type One of `TYPE_TEXT`, `TYPE_BASE64` or `TYPE_URL`.
+     */
+    public void add(String name, byte[] value, int type) {
+        names.add(name);
+        values.add(value);
+        types.add(type);
+    }
+
+    /**
+     * Adds a plain text attribute value to the record.
+     *
+     * @param name The attribute name.
+     * @param value The attribute value.
+     */
+    public void add(String name, String value) {
+        add(name, value.getBytes(StandardCharsets.UTF_8), TYPE_TEXT);
+    }
+
+    public String getDN() {
+        return dn;
+    }
+
+    /**
+     * @return The number of attribute values in the record.
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    public byte[] getValue(int index) {
+        return values.get(index);
+    }
+
+    public int getType(int index) {
+        return types.get(index);
+    }
+
+    /**
+     * @param index The value index.
+     * @return The decoded value as a UTF-8 string.
+     */
+    public String getValueString(int index) {
+        return new String(values.get(index), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a value the way the text tools show it: the part after the attribute name and colon.
+     * Base64 values come back as `: <base64>` and URL values as `< <url>`.
+     *
+     * @param index The value index.
+     * @return The value in LDIF notation.
+     */
+    public String getLDIFValue(int index) {
+        byte[] value = values.get(index);
+        switch (types.get(index)) {
+            case TYPE_BASE64:
+                return ": " + Base64.getEncoder().encodeToString(value);
+            case TYPE_URL:
+                return "< " + new String(value, StandardCharsets.UTF_8);
+            default:
+                return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the DN the way the comparators key their records, base64 encoded with a leading `: ` if it is not a safe
+     * string. Use `getDNLine()` to write LDIF.
+     *
+     * @return The DN in LDIF notation.
+     */
+    public String getLDIFDN() {
+        return isSafeString(dn) ? dn : ": " + Base64.getEncoder().encodeToString(dn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The `dn:` line for this record, or a `dn::` line with the base64 encoded DN if it is not a safe string.
+     */
+    public String getDNLine() {
+        return isSafeString(dn) ? "dn: " + dn : "dn:: " + Base64.getEncoder().encodeToString(dn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the LDIF values of an attribute.
+     *
+     * @param attributeName The lower case attribute name.
+     * @return The values in file order, empty if the attribute is not present.
+     */
+    public List<String> getValues(String attributeName) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(attributeName)) {
+                result.add(getLDIFValue(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the attribute map used by the comparators: lower case attribute names mapped to LDIF values.
+     * Empty values are skipped, as they are by the text parsers.
+     *
+     * @return The attribute map.
+     */
+    public Map<String, List<String>> toAttributeMap() {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (values.get(i).length == 0) continue;
+            map.computeIfAbsent(names.get(i).toLowerCase(), k -> new ArrayList<>()).add(getLDIFValue(i));
+        }
+        return map;
+    }
+
+    /**
+     * Appends the record as LDIF text, without the trailing blank line.
+     *
+     * @param out The builder to append to.
+     */
+    public void appendLDIF(StringBuilder out) {
+        out.append(getDNLine()).append(System.lineSeparator());
+        for (int i = 0; i < names.size(); i++) {
+            out.append(names.get(i)).append(':');
+            int type = types.get(i);
+            if (type == TYPE_TEXT && !isSafeString(getValueString(i))) {
+                type = TYPE_BASE64;
+            }
+            if (type == TYPE_BASE64) {
+                out.append(": ").append(Base64.getEncoder().encodeToString(values.get(i)));
+            } else if (type == TYPE_URL) {
+                out.append("< ").append(getValueString(i));
+            } else {
+                out.append(' ').append(getValueString(i));
+            }
+            out.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * @return The record as LDIF text, without the trailing blank line.
+     */
+    public String toLDIF() {
+        StringBuilder out = new StringBuilder();
+        appendLDIF(out);
+        return out.toString();
+    }
+
+    /**
+     * @return The byte offset of the record in a text LDIF file, its index in a binary LDIF cache, or -1 if unknown.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * @return The exact source bytes of the record, including folded lines and comments, or null if they were not kept.
+     */
+    public byte[] getRawText() {
+        return rawText;
+    }
+
+    public void setRawText(byte[] rawText) {
+        this.rawText = rawText;
+    }
+
+    /**
+     * Checks whether a value can be written as a plain LDIF value (RFC 2849 SAFE-STRING).
+     *
+     * @param value The value to check.
+     * @return `true` if the value needs no base64 encoding, `false` otherwise.
+     */
+    public static boolean isSafeString(String value) {
+        if (value.isEmpty()) return true;
+        char first = value.charAt(0);
+        if (first == ' ' || first == ':' || first == '<') return false;
+        if (value.charAt(value.length() - 1) == ' ') return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == 0 || c == '\n' || c == '\r' || c > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -24,8 +24,10 @@ public class LDIFRecordComparator {
         String ldifFile1 = args[0];
         String ldifFile2 = args[1];
 
-        Map<String, Map<String, List<String>>> records1 = parseLDIF(ldifFile1);
-        Map<String, Map<String, List<String>>> records2 = parseLDIF(ldifFile2);
+        // Values are unfolded differently by the text parser, so a binary cache is only compared against records read the same way
+        boolean binary = LDIFBinaryReader.isBinaryLDIF(ldifFile1) || LDIFBinaryReader.isBinaryLDIF(ldifFile2);
+        Map<String, Map<String, List<String>>> records1 = binary ? loadRecords(ldifFile1) : parseLDIF(ldifFile1);
+        Map<String, Map<String, List<String>>> records2 = binary ? loadRecords(ldifFile2) : parseLDIF(ldifFile2);
 
         compareRecords(records1, records2);
     }
@@ -99,6 +101,42 @@ public class LDIFRecordComparator {
         return records;
     }
 
+    /**
+     * Loads records through the shared `LDIFReader`, or straight from a binary LDIF cache, decoding its chunks in parallel.
+     * The result has the same shape as the map `parseLDIF` builds.
+     *
+     * @param fileName The name of the text or binary LDIF file.
+     * @return A map where the key is the DN and the value is a map of attributes and their values.
+     */
+    private static Map<String, Map<String, List<String>>> loadRecords(String fileName) {
+        Map<String, Map<String, List<String>>> records = new HashMap<>();
+        try {
+            if (LDIFBinaryReader.isBinaryLDIF(fileName)) {
+                try (LDIFBinaryReader reader = new LDIFBinaryReader(fileName)) {
+                    reader.processInChunks(Runtime.getRuntime().availableProcessors(), chunk -> {
+                        Map<String, Map<String, List<String>>> parsed = new LinkedHashMap<>();
+                        LDIFRecord record;
+                        while ((record = chunk.next()) != null) {
+                            parsed.put(record.getLDIFDN(), record.toAttributeMap());
+                        }
+                        return parsed;
+                    }, records::putAll);
+                }
+            } else {
+                try (LDIFReader reader = new LDIFReader(fileName)) {
+                    LDIFRecord record;
+                    while ((record = reader.next()) != null) {
+                        records.put(record.getLDIFDN(), record.toAttributeMap());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file " + fileName + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return records;
+    }
+
     /**
      * Adds a value to the current record.
      *
@@ -0,0 +1,58 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+
+/**
+ * The `LDIFRecordSource` interface is a stream of LDIF records, read one at a time.
+ * It is implemented by the text `LDIFReader` and by the binary cache reader, so tools can accept either format.
+ */
+public interface LDIFRecordSource extends Closeable {
+
+    /**
+     * Reads the next record.
+     *
+     * @return The next record, or null at the end of the input.
+     * @throws IOException If the input cannot be read or is malformed.
+     */
+    LDIFRecord next() throws IOException;
+
+    /**
+     * Reads only the DN of the next record. Sources that can skip over the attributes without parsing them override
+     * this; by default the whole record is read.
+     *
+     * @return The DN of the next record, or null at the end of the input.
+     * @throws IOException If the input cannot be read or is malformed.
+     */
+    default String nextDN() throws IOException {
+        LDIFRecord record = next();
+        return record == null ? null : record.getDN();
+    }
+
+    /**
+     * Opens a file as a record source, detecting whether it is text LDIF or a binary LDIF cache.
+     *
+     * @param fileName The name of the file to open.
+     * @return A record source over the whole file.
+     * @throws IOException If the file cannot be opened.
+     */
+    static LDIFRecordSource open(String fileName) throws IOException {
+        if (LDIFBinaryReader.isBinaryLDIF(fileName)) {
+            LDIFBinaryReader binaryReader = new LDIFBinaryReader(fileName);
+            LDIFRecordSource cursor = binaryReader.cursor(0, binaryReader.getRecordCount());
+            return new LDIFRecordSource() {
+                public LDIFRecord next() throws IOException {
+                    return cursor.next();
+                }
+
+                public String nextDN() throws IOException {
+                    return cursor.nextDN();
+                }
+
+                public void close() throws IOException {
+                    binaryReader.close();
+                }
+            };
+        }
+        return new LDIFReader(fileName);
+    }
+}
@@ -0,0 +1,292 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The `LDIFSorter` class sorts the records of an LDIF file so it can be bulk loaded.
+ * By default records are ordered by DN hierarchy, so every parent comes before its children; `--reverse` puts children
+ * first for delete files, and `--hash` orders by DN hash instead.
+ * <p>
+ * The sort is an external merge sort: records are collected into runs of bounded size, each run is sorted on a worker
+ * thread and spilled to a temporary file, and the runs are then merged. Memory use depends on the run size, not on the
+ * size of the input, and records are copied byte for byte, including folded lines and comments. The output is written
+ * under a temporary name and only renamed to the output file once the sort has completed, so a failed sort never
+ * leaves a partial file behind.
+ */
+public class LDIFSorter {
+
+    /** Maximum number of runs merged at once; more runs are merged in several passes. */
+    private static final int MAX_MERGE_WIDTH = 64;
+    /** Estimated per-record overhead on top of the key and record bytes, used to size runs. */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * The main method to execute the sort.
+     *
+     * @param args Command line arguments. Expects at least 2 arguments:
+     *             <input-file> <output-file> [--hash] [--reverse] [--run-size <MB>] [--temp-dir <dir>]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFSorter <input-file> <output-file> [--hash] [--reverse] [--run-size <MB>] [--temp-dir <dir>]");
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+        String outputFile = args[1];
+        boolean byHash = false;
+        boolean reverse = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long runSize = Math.max(1 << 20, Runtime.getRuntime().maxMemory() / (4L * (threads + 1)));
+        File tempDir = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hash":
+                    byHash = true;
+                    break;
+                case "--reverse":
+                    reverse = true;
+                    break;
+                case "--run-size":
+                    runSize = Long.parseLong(args[++i]) << 20;
+                    break;
+                case "--temp-dir":
+                    tempDir = new File(args[++i]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Comparator<Entry> order = Comparator.comparing((Entry e) -> e.key).thenComparingLong(e -> e.sequence);
+        if (reverse) {
+            order = order.reversed();
+        }
+
+        List<File> runs = new ArrayList<>();
+        File tempOutput = new File(outputFile + ".tmp");
+        boolean failed = false;
+        try {
+            try (LDIFRecordSource source = openSource(inputFile)) {
+                runs = createRuns(source, byHash, order, runSize, threads, tempDir);
+            }
+            while (runs.size() > MAX_MERGE_WIDTH) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_MERGE_WIDTH) {
+                    List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_WIDTH));
+                    File run = createTempFile(tempDir);
+                    try (DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(run), 256 * 1024))) {
+                        mergeRuns(group, order, entry -> writeEntry(out, entry));
+                    }
+                    merged.add(run);
+                }
+                deleteAll(runs);
+                runs = merged;
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempOutput), 256 * 1024)) {
+                byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+                mergeRuns(runs, order, entry -> {
+                    out.write(entry.text);
+                    if (entry.text.length > 0 && entry.text[entry.text.length - 1] != '\n') {
+                        out.write(separator);
+                    }
+                    out.write(separator);
+                });
+            }
+            Files.move(tempOutput.toPath(), Paths.get(outputFile), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("An error occurred while sorting the file: " + e.getMessage());
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            deleteAll(runs);
+            tempOutput.delete();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Opens the input, keeping the raw text of each record so it can be copied unchanged.
+     */
+    private static LDIFRecordSource openSource(String inputFile) throws IOException {
+        if (LDIFBinaryReader.isBinaryLDIF(inputFile)) {
+            return LDIFRecordSource.open(inputFile);
+        }
+        return LDIFReader.open(inputFile, 0, true);
+    }
+
+    /**
+     * Reads the input into runs of at most `runSize` bytes, sorts each run on a worker thread and spills it to disk.
+     * At most `threads` runs are held in memory at once besides the one being filled.
+     *
+     * @return The run files, in input order.
+     */
+    private static List<File> createRuns(LDIFRecordSource source, boolean byHash, Comparator<Entry> order,
+                                         long runSize, int threads, File tempDir) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads);
+        List<Future<File>> futures = new ArrayList<>();
+        try {
+            List<Entry> run = new ArrayList<>();
+            long runBytes = 0;
+            long sequence = 0;
+            LDIFRecord record;
+            while ((record = source.next()) != null) {
+                byte[] text = record.getRawText() != null
+                        ? record.getRawText()
+                        : record.toLDIF().getBytes(StandardCharsets.UTF_8);
+                String key = byHash
+                        ? String.format("%016x", DNUtil.hash64(DNUtil.normalize(record.getDN())))
+                        : DNUtil.hierarchyKey(record.getDN());
+                run.add(new Entry(key, sequence++, text));
+                runBytes += text.length + 2L * key.length() + ENTRY_OVERHEAD;
+                if (runBytes >= runSize) {
+                    futures.add(submitRun(executor, inFlight, run, order, tempDir));
+                    run = new ArrayList<>();
+                    runBytes = 0;
+                }
+            }
+            if (!run.isEmpty() || futures.isEmpty()) {
+                futures.add(submitRun(executor, inFlight, run, order, tempDir));
+            }
+
+            List<File> runs = new ArrayList<>();
+            for (Future<File> future : futures) {
+                runs.add(future.get());
+            }
+            return runs;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Future<File> submitRun(ExecutorService executor, Semaphore inFlight, List<Entry> run,
+                                          Comparator<Entry> order, File tempDir) throws InterruptedException {
+        inFlight.acquire();
+        return executor.submit(() -> {
+            try {
+                run.sort(order);
+                File file = createTempFile(tempDir);
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), 256 * 1024))) {
+                    for (Entry entry : run) {
+                        writeEntry(out, entry);
+                    }
+                }
+                return file;
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Merges sorted run files, handing each entry to the sink in order.
+     */
+    private static void mergeRuns(List<File> runs, Comparator<Entry> order, EntrySink sink) throws IOException {
+        List<DataInputStream> inputs = new ArrayList<>();
+        PriorityQueue<RunHead> queue = new PriorityQueue<>((a, b) -> order.compare(a.entry, b.entry));
+        try {
+            for (File run : runs) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 64 * 1024));
+                inputs.add(in);
+                Entry entry = readEntry(in);
+                if (entry != null) {
+                    queue.add(new RunHead(entry, in));
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunHead head = queue.poll();
+                sink.accept(head.entry);
+                head.entry = readEntry(head.in);
+                if (head.entry != null) {
+                    queue.add(head);
+                }
+            }
+        } finally {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeLong(entry.sequence);
+        out.writeInt(entry.text.length);
+        out.write(entry.text);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        int keyLength;
+        try {
+            keyLength = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        in.readFully(key);
+        long sequence = in.readLong();
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        return new Entry(new String(key, StandardCharsets.UTF_8), sequence, text);
+    }
+
+    private static File createTempFile(File tempDir) throws IOException {
+        File file = File.createTempFile("ldifsort", ".run", tempDir);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * A record with its sort key. The input sequence number keeps the sort stable across runs.
+     */
+    private static class Entry {
+        final String key;
+        final long sequence;
+        final byte[] text;
+
+        Entry(String key, long sequence, byte[] text) {
+            this.key = key;
+            this.sequence = sequence;
+            this.text = text;
+        }
+    }
+
+    private static class RunHead {
+        Entry entry;
+        final DataInputStream in;
+
+        RunHead(Entry entry, DataInputStream in) {
+            this.entry = entry;
+            this.in = in;
+        }
+    }
+
+    private interface EntrySink {
+        void accept(Entry entry) throws IOException;
+    }
+}
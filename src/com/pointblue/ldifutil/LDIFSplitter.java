@@ -0,0 +1,339 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The `LDIFSplitter` class splits one LDIF file into shards for parallel downstream loads.
+ * Records can be sharded by subtree (one shard per entry directly below a base DN), by DN hash, or into shards of
+ * balanced byte size that keep the input order. Records are copied byte for byte, including folded lines.
+ * <p>
+ * The input is read once on the calling thread; shard output is batched into large blocks and written by a pool of
+ * writer threads, which also compute the record counts and SHA-256 checksums for the optional manifest.
+ */
+public class LDIFSplitter {
+
+    /** Size of the block collected for a shard before it is handed to its writer thread. */
+    private static final int BLOCK_SIZE = 1 << 20;
+    /** Number of blocks that may wait for each writer thread before reading pauses. */
+    private static final int QUEUE_BLOCKS = 8;
+    /** Total size of the blocks being collected for all shards before they are all handed to the writers. */
+    private static final long MAX_COLLECTED = 32L * BLOCK_SIZE;
+
+    /**
+     * The main method to execute the split.
+     *
+     * @param args Command line arguments. Expects at least 4 arguments:
+     *             <input-file> <output-prefix> --by subtree|hash|size [--base <dn>] [--shards <n>] [--manifest <file>]
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java com.pointblue.ldifutil.LDIFSplitter <input-file> <output-prefix> --by subtree|hash|size [--base <dn>] [--shards <n>] [--manifest <file>]");
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+        String outputPrefix = args[1];
+        String mode = null;
+        String baseDN = null;
+        int shardCount = 0;
+        String manifestFile = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--by":
+                    mode = args[++i].toLowerCase();
+                    break;
+                case "--base":
+                    baseDN = DNUtil.normalize(args[++i]);
+                    break;
+                case "--shards":
+                    shardCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--manifest":
+                    manifestFile = args[++i];
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        boolean valid = "subtree".equals(mode)
+                ? baseDN != null
+                : ("hash".equals(mode) || "size".equals(mode)) && shardCount > 0;
+        if (!valid) {
+            System.out.println("--by subtree needs --base <dn>; --by hash and --by size need --shards <n>");
+            System.exit(1);
+        }
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), "subtree".equals(mode) ? 8 : shardCount));
+        ShardWriter[] writers = new ShardWriter[threads];
+        for (int i = 0; i < threads; i++) {
+            writers[i] = new ShardWriter();
+            writers[i].start();
+        }
+
+        Map<String, Shard> shards = new LinkedHashMap<>();
+        boolean failed = false;
+        long collected = 0;
+        try (LDIFRecordSource source = LDIFBinaryReader.isBinaryLDIF(inputFile)
+                ? LDIFRecordSource.open(inputFile)
+                : LDIFReader.open(inputFile, 0, true)) {
+            long targetBytes = new File(inputFile).length() / Math.max(1, shardCount) + 1;
+            long bytesRead = 0;
+            byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+            LDIFRecord record;
+            while ((record = source.next()) != null) {
+                byte[] text = record.getRawText() != null
+                        ? record.getRawText()
+                        : record.toLDIF().getBytes(StandardCharsets.UTF_8);
+                String name;
+                if ("subtree".equals(mode)) {
+                    name = subtreeShard(record.getDN(), baseDN);
+                } else if ("hash".equals(mode)) {
+                    name = String.valueOf(Math.floorMod(DNUtil.hash64(DNUtil.normalize(record.getDN())), (long) shardCount));
+                } else {
+                    name = String.valueOf(Math.min(shardCount - 1, bytesRead / targetBytes));
+                }
+                bytesRead += text.length;
+
+                Shard shard = shards.get(name);
+                if (shard == null) {
+                    shard = new Shard(name, outputPrefix + "." + name + ".ldif", writers[shards.size() % threads]);
+                    shards.put(name, shard);
+                }
+                collected += shard.add(text, separator);
+                if (collected > MAX_COLLECTED) {
+                    // Many shards each holding part of a block; hand them all over so memory stays bounded
+                    for (Shard pending : shards.values()) {
+                        pending.flush();
+                    }
+                    collected = 0;
+                }
+            }
+            for (Shard shard : shards.values()) {
+                shard.flush();
+            }
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            System.err.println("An error occurred while splitting the file: " + e);
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            for (ShardWriter writer : writers) {
+                writer.finish();
+            }
+        }
+
+        for (ShardWriter writer : writers) {
+            if (writer.error != null) {
+                System.err.println("An error occurred while writing a shard: " + writer.error);
+                failed = true;
+            }
+        }
+        if (failed) {
+            // The shards are incomplete; remove them so no loader picks them up
+            for (Shard shard : shards.values()) {
+                new File(shard.fileName).delete();
+            }
+            System.err.println("Split failed; removed " + shards.size() + " partial shards and wrote no manifest");
+            System.exit(1);
+        }
+
+        for (Shard shard : shards.values()) {
+            System.out.println(shard.fileName + ": " + shard.records + " records");
+        }
+        if (manifestFile != null) {
+            try (PrintWriter manifest = new PrintWriter(new BufferedWriter(new FileWriter(manifestFile)))) {
+                manifest.println("# shard\tfile\trecords\tbytes\tsha256");
+                for (Shard shard : shards.values()) {
+                    manifest.println(shard.name + "\t" + shard.fileName + "\t" + shard.records + "\t" + shard.bytes + "\t" + shard.checksum);
+                }
+            } catch (IOException e) {
+                System.err.println("An error occurred while writing the manifest: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Names the subtree shard of an entry: the RDN directly below the base DN, made safe for a file name.
+     * The base entry itself goes to the `base` shard and entries outside the base to the `other` shard.
+     */
+    private static String subtreeShard(String dn, String baseDN) {
+        String normalized = DNUtil.normalize(dn);
+        if (normalized.equals(baseDN)) {
+            return "base";
+        }
+        if (!normalized.endsWith("," + baseDN)) {
+            return "other";
+        }
+        List<String> rdns = DNUtil.splitRDNs(normalized.substring(0, normalized.length() - baseDN.length() - 1));
+        return rdns.get(rdns.size() - 1).replaceAll("[^a-z0-9._-]", "_");
+    }
+
+    /**
+     * One output shard. Records are collected into a block on the reading thread and handed to the shard's writer.
+     */
+    private static class Shard {
+        final String name;
+        final String fileName;
+        final ShardWriter writer;
+        long records = 0;
+        // Written by the writer thread, read after it has finished
+        long bytes = 0;
+        String checksum;
+        OutputStream out;
+        MessageDigest digest;
+        private ByteArrayOutputStream block = new ByteArrayOutputStream(64 * 1024);
+
+        Shard(String name, String fileName, ShardWriter writer) {
+            this.name = name;
+            this.fileName = fileName;
+            this.writer = writer;
+        }
+
+        /**
+         * @return The change in the number of bytes collected for this shard but not yet handed to its writer.
+         */
+        long add(byte[] text, byte[] separator) throws IOException {
+            int before = block.size();
+            records++;
+            block.write(text);
+            if (text.length > 0 && text[text.length - 1] != '\n') {
+                block.write(separator);
+            }
+            block.write(separator);
+            if (block.size() >= BLOCK_SIZE) {
+                flush();
+                return -before;
+            }
+            return block.size() - before;
+        }
+
+        void flush() throws IOException {
+            if (block.size() == 0) return;
+            writer.submit(new Block(this, block.toByteArray()));
+            block = new ByteArrayOutputStream(64 * 1024);
+        }
+    }
+
+    private static class Block {
+        final Shard shard;
+        final byte[] data;
+
+        Block(Shard shard, byte[] data) {
+            this.shard = shard;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A writer thread that owns the output streams of its shards. Blocks are written straight to the files, so an open
+     * shard costs no buffer of its own. If the thread dies, `submit` and `finish` notice it instead of waiting forever.
+     */
+    private static class ShardWriter extends Thread {
+        private static final Block END = new Block(null, null);
+
+        private final BlockingQueue<Block> queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+        private final List<Shard> shards = new ArrayList<>();
+        volatile Throwable error;
+
+        ShardWriter() {
+            setDaemon(true);
+        }
+
+        void submit(Block block) throws IOException {
+            if (error != null) {
+                throw failure();
+            }
+            if (!offer(block)) {
+                throw failure();
+            }
+        }
+
+        void finish() {
+            if (offer(END)) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (error == null && isAlive()) {
+                error = new InterruptedIOException();
+            }
+        }
+
+        /**
+         * Queues a block, waiting while the queue is full.
+         *
+         * @return `false` if the writer thread has died and will never take it.
+         */
+        private boolean offer(Block block) {
+            try {
+                while (!queue.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                    if (!isAlive()) {
+                        if (error == null) error = new IOException("Shard writer stopped unexpectedly");
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private IOException failure() {
+            return error instanceof IOException ? (IOException) error : new IOException("Shard writer failed: " + error, error);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Block block;
+                    try {
+                        block = queue.take();
+                    } catch (InterruptedException e) {
+                        error = new InterruptedIOException();
+                        break;
+                    }
+                    if (block == END) break;
+                    // Keep draining after an error so the reading thread is never blocked
+                    if (error != null) continue;
+                    Shard shard = block.shard;
+                    try {
+                        if (shard.out == null) {
+                            shard.digest = MessageDigest.getInstance("SHA-256");
+                            shard.out = new FileOutputStream(shard.fileName);
+                            shards.add(shard);
+                        }
+                        shard.out.write(block.data);
+                        shard.digest.update(block.data);
+                        shard.bytes += block.data.length;
+                    } catch (Throwable e) {
+                        error = e;
+                    }
+                }
+                for (Shard shard : shards) {
+                    try {
+                        shard.out.close();
+                    } catch (IOException e) {
+                        if (error == null) error = e;
+                    }
+                    StringBuilder hex = new StringBuilder();
+                    for (byte b : shard.digest.digest()) {
+                        hex.append(String.format("%02x", b));
+                    }
+                    shard.checksum = hex.toString();
+                }
+            } catch (Throwable e) {
+                if (error == null) error = e;
+            }
+        }
+    }
+}
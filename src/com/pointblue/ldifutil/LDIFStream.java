@@ -0,0 +1,192 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * The `LDIFStream` class is a stream of LDIF records that can be built into a pipeline in-process, with no temporary
+ * files and no re-parsing: stages such as `filter`, `strip` and `extract` wrap the stream and are applied lazily as
+ * records are read, and `diff` compares it with another stream. Like the command line tools, it accepts both text LDIF
+ * and the binary cache written by `LDIFBinaryConverter`.
+ * <p>
+ * A stream is read once, from one thread at a time. Closing any stage closes the input.
+ * <pre>
+ * try (LDIFStream users = LDIFStream.open("export.ldif")
+ *         .filter(record -&gt; record.getDN().endsWith("ou=people,dc=example,dc=com"))
+ *         .strip("userPassword")) {
+ *     for (LDIFRecord record : users) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public class LDIFStream extends LDIFPipe<LDIFRecord> implements LDIFRecordSource {
+
+    private final LDIFRecordSource source;
+
+    private LDIFStream(LDIFRecordSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Opens a text LDIF file or a binary LDIF cache.
+     *
+     * @param fileName The name of the file to read.
+     * @return The stream of its records.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static LDIFStream open(String fileName) throws IOException {
+        return new LDIFStream(LDIFRecordSource.open(fileName));
+    }
+
+    /**
+     * Reads text LDIF from an input stream.
+     *
+     * @param in The stream to read; it is closed with the LDIF stream.
+     * @return The stream of its records.
+     */
+    public static LDIFStream of(InputStream in) {
+        return new LDIFStream(new LDIFReader(in, 0, false));
+    }
+
+    /**
+     * Wraps any record source, such as a cursor of `LDIFBinaryReader`.
+     *
+     * @param source The source to read; it is closed with the stream.
+     * @return The stream of its records.
+     */
+    public static LDIFStream of(LDIFRecordSource source) {
+        return source instanceof LDIFStream ? (LDIFStream) source : new LDIFStream(source);
+    }
+
+    @Override
+    public LDIFRecord next() throws IOException {
+        return source.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Applies a function to every record.
+     *
+     * @param mapper Returns the record to pass on, or `null` to drop it.
+     * @return The mapped stream.
+     */
+    public LDIFStream map(UnaryOperator<LDIFRecord> mapper) {
+        LDIFStream upstream = this;
+        return new LDIFStream(new LDIFRecordSource() {
+            public LDIFRecord next() throws IOException {
+                LDIFRecord record;
+                while ((record = upstream.next()) != null) {
+                    LDIFRecord mapped = mapper.apply(record);
+                    if (mapped != null) {
+                        return mapped;
+                    }
+                }
+                return null;
+            }
+
+            public void close() throws IOException {
+                upstream.close();
+            }
+        });
+    }
+
+    /**
+     * Keeps only the records that match a predicate.
+     *
+     * @param predicate Returns `true` for the records to keep.
+     * @return The filtered stream.
+     */
+    public LDIFStream filter(Predicate<LDIFRecord> predicate) {
+        return map(record -> predicate.test(record) ? record : null);
+    }
+
+    /**
+     * Removes attributes from every record, as `StripAttributes` does.
+     *
+     * @param attributes The attributes to remove, in any case.
+     * @return The stripped stream.
+     */
+    public LDIFStream strip(String... attributes) {
+        Set<String> remove = lowerCase(attributes);
+        return map(record -> copy(record, name -> !remove.contains(name)));
+    }
+
+    /**
+     * Keeps only some attributes of every record, as `LDIFAttributeExtractor` does. Records that have none of them are
+     * dropped.
+     *
+     * @param attributes The attributes to keep, in any case.
+     * @return The extracted stream.
+     */
+    public LDIFStream extract(String... attributes) {
+        Set<String> keep = lowerCase(attributes);
+        return map(record -> {
+            LDIFRecord extracted = copy(record, keep::contains);
+            return extracted.size() > 0 ? extracted : null;
+        });
+    }
+
+    /**
+     * Compares this stream with another one by DN. See `LDIFDiff.of`.
+     *
+     * @param other The stream to compare with; it is read into memory when the first event is asked for.
+     * @return The differences, as events.
+     */
+    public LDIFDiff diff(LDIFRecordSource other) {
+        return LDIFDiff.of(this, other);
+    }
+
+    /**
+     * Writes the remaining records as LDIF text, each followed by a blank line, and closes the stream.
+     *
+     * @param out The writer to write to; it is flushed but not closed.
+     * @return The number of records written.
+     * @throws IOException If the input cannot be read or the output cannot be written.
+     */
+    public long writeTo(Writer out) throws IOException {
+        long count = 0;
+        try {
+            StringBuilder text = new StringBuilder();
+            LDIFRecord record;
+            while ((record = next()) != null) {
+                text.setLength(0);
+                record.appendLDIF(text);
+                text.append(System.lineSeparator());
+                out.append(text);
+                count++;
+            }
+            out.flush();
+        } finally {
+            close();
+        }
+        return count;
+    }
+
+    private static Set<String> lowerCase(String[] attributes) {
+        Set<String> set = new HashSet<>();
+        for (String attribute : attributes) {
+            set.add(attribute.toLowerCase());
+        }
+        return set;
+    }
+
+    /**
+     * Copies a record with only the values whose lower case attribute name is accepted.
+     */
+    private static LDIFRecord copy(LDIFRecord record, Predicate<String> accept) {
+        LDIFRecord copy = new LDIFRecord(record.getDN());
+        copy.setOffset(record.getOffset());
+        for (int i = 0; i < record.size(); i++) {
+            if (accept.test(record.getName(i).toLowerCase())) {
+                copy.add(record.getName(i), record.getValue(i), record.getType(i));
+            }
+        }
+        return copy;
+    }
+}
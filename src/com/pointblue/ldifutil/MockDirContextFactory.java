@@ -0,0 +1,152 @@
+package com.pointblue.ldifutil;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.*;
+import javax.naming.directory.*;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * The `MockDirContextFactory` class is a JNDI context factory for an in-memory directory with injected latency, so the
+ * concurrency limits of `LDIFAttr2DirAttrCompare` can be tried out without a real server. Pass it with
+ * `--context-factory com.pointblue.ldifutil.MockDirContextFactory`; the URL and credentials are ignored.
+ * <p>
+ * It is configured with system properties:
+ * <ul>
+ *   <li>`ldifutil.mock.ldif`: an LDIF file with the entries to serve. Without it, every entry exists with no
+ *       attributes.</li>
+ *   <li>`ldifutil.mock.bind-ms`: the time a bind takes (0 by default).</li>
+ *   <li>`ldifutil.mock.search-ms`: the time a search takes (1 by default).</li>
+ *   <li>`ldifutil.mock.capacity`: the number of searches served at once (unlimited by default). Searches beyond it
+ *       wait for a free slot, so latency rises with the load like on a busy server.</li>
+ * </ul>
+ * When the JVM exits, the number of binds and the most searches seen in flight are printed to stderr.
+ */
+public class MockDirContextFactory implements InitialContextFactory {
+
+    private static final long BIND_MILLIS = Long.getLong("ldifutil.mock.bind-ms", 0);
+    private static final long SEARCH_MILLIS = Long.getLong("ldifutil.mock.search-ms", 1);
+    private static final Semaphore CAPACITY = new Semaphore(Integer.getInteger("ldifutil.mock.capacity", Integer.MAX_VALUE), true);
+    private static final Map<String, LDIFRecord> ENTRIES = load(System.getProperty("ldifutil.mock.ldif"));
+    private static final AtomicInteger binds = new AtomicInteger();
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(
+                "Mock directory: " + binds.get() + " binds, at most " + maxInFlight.get() + " searches in flight")));
+    }
+
+    @Override
+    public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+        sleep(BIND_MILLIS);
+        binds.incrementAndGet();
+        return (DirContext) Proxy.newProxyInstance(DirContext.class.getClassLoader(), new Class<?>[]{DirContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "search":
+                            if (args.length == 3 && args[0] instanceof String && args[2] instanceof SearchControls) {
+                                return search((String) args[0], (SearchControls) args[2]);
+                            }
+                            break;
+                        case "close":
+                            return null;
+                        case "toString":
+                            return "MockDirContext";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                    }
+                    throw new OperationNotSupportedException(method.getName());
+                });
+    }
+
+    private static NamingEnumeration<SearchResult> search(String dn, SearchControls controls) throws NamingException {
+        try {
+            CAPACITY.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedNamingException();
+        }
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            sleep(SEARCH_MILLIS);
+        } finally {
+            inFlight.decrementAndGet();
+            CAPACITY.release();
+        }
+
+        BasicAttributes attributes = new BasicAttributes(true);
+        if (ENTRIES != null) {
+            LDIFRecord record = ENTRIES.get(DNUtil.normalize(dn));
+            if (record == null) {
+                throw new NameNotFoundException(dn);
+            }
+            Set<String> returning = new HashSet<>();
+            for (String name : controls.getReturningAttributes() != null ? controls.getReturningAttributes() : new String[0]) {
+                returning.add(name.toLowerCase());
+            }
+            for (int i = 0; i < record.size(); i++) {
+                String name = record.getName(i);
+                if (controls.getReturningAttributes() == null || returning.contains(name.toLowerCase())) {
+                    Attribute attribute = attributes.get(name);
+                    if (attribute == null) {
+                        attribute = new BasicAttribute(name);
+                        attributes.put(attribute);
+                    }
+                    attribute.add(record.getValueString(i));
+                }
+            }
+        }
+        Iterator<SearchResult> results = Collections.singletonList(new SearchResult(dn, null, attributes)).iterator();
+        return new NamingEnumeration<SearchResult>() {
+            public SearchResult next() {
+                return results.next();
+            }
+
+            public boolean hasMore() {
+                return results.hasNext();
+            }
+
+            public void close() {
+            }
+
+            public boolean hasMoreElements() {
+                return results.hasNext();
+            }
+
+            public SearchResult nextElement() {
+                return results.next();
+            }
+        };
+    }
+
+    private static void sleep(long millis) throws NamingException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedNamingException();
+        }
+    }
+
+    private static Map<String, LDIFRecord> load(String fileName) {
+        if (fileName == null) return null;
+        Map<String, LDIFRecord> entries = new HashMap<>();
+        try (LDIFRecordSource source = LDIFRecordSource.open(fileName)) {
+            LDIFRecord record;
+            while ((record = source.next()) != null) {
+                entries.put(DNUtil.normalize(record.getDN()), record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the mock directory from " + fileName, e);
+        }
+        return entries;
+    }
+}
@@ -24,6 +24,11 @@ public class StripAttributes {
         String outputFile = args[1];
         String[] attributesToRemove = args[2].split(",");
 
+        if (LDIFBinaryReader.isBinaryLDIF(inputFile)) {
+            stripBinary(inputFile, outputFile, attributesToRemove);
+            return;
+        }
+
         try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
              BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
 
@@ -72,6 +77,38 @@ public class StripAttributes {
         }
     }
 
+    /**
+     * Strips attributes from a binary LDIF cache and writes the result as text LDIF.
+     * Chunks of records are rendered in parallel and written in file order.
+     *
+     * @param inputFile The binary LDIF file.
+     * @param outputFile The LDIF file to write.
+     * @param attributesToRemove The list of attributes to remove.
+     */
+    private static void stripBinary(String inputFile, String outputFile, String[] attributesToRemove) {
+        try (LDIFBinaryReader reader = new LDIFBinaryReader(inputFile);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
+            reader.processInChunks(Runtime.getRuntime().availableProcessors(), records -> {
+                StringBuilder out = new StringBuilder();
+                LDIFRecord record;
+                while ((record = records.next()) != null) {
+                    LDIFRecord stripped = new LDIFRecord(record.getDN());
+                    for (int i = 0; i < record.size(); i++) {
+                        if (!shouldRemove(record.getName(i).toLowerCase(), attributesToRemove)) {
+                            stripped.add(record.getName(i), record.getValue(i), record.getType(i));
+                        }
+                    }
+                    stripped.appendLDIF(out);
+                    out.append(System.lineSeparator());
+                }
+                return out;
+            }, out -> writer.append(out));
+        } catch (IOException e) {
+            System.err.println("An error occurred while reading or writing files: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Determines if the given attribute should be removed.
      *